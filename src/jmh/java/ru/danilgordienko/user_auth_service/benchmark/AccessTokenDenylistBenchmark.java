@@ -0,0 +1,65 @@
+package ru.danilgordienko.user_auth_service.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.danilgordienko.user_auth_service.config.AccessTokenDenylist;
+import ru.danilgordienko.user_auth_service.model.VerifiedToken;
+import ru.danilgordienko.user_auth_service.repository.RevokedAccessTokenRepository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Проверка отзыва access токена в фильтре: notRevoked - обычный запрос, отсекается фильтром Блума
+// без аллокаций, revoked - точный поиск в map. revoked - сколько jti уже в списке отзыва
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccessTokenDenylistBenchmark {
+
+    @Param({"0", "10000", "100000"})
+    public int revoked;
+
+    private AccessTokenDenylist denylist;
+    private VerifiedToken notRevokedToken;
+    private VerifiedToken revokedToken;
+
+    @Setup
+    public void setUp() {
+        RevokedAccessTokenRepository repository = BenchmarkFixtures.stub(RevokedAccessTokenRepository.class,
+                (method, args) -> switch (method) {
+                    case "insert" -> 1;
+                    case "findAllByRevokedAtGreaterThanEqualAndExpiresAtAfter" -> List.of();
+                    default -> throw new UnsupportedOperationException(method);
+                });
+        denylist = new AccessTokenDenylist(repository, new SimpleMeterRegistry(), 100_000, 0.01);
+        ReflectionTestUtils.setField(denylist, "accessExpiration", 800_000);
+        for (int i = 0; i < revoked; i++) {
+            denylist.revoke(UUID.randomUUID().toString());
+        }
+        String revokedId = UUID.randomUUID().toString();
+        denylist.revoke(revokedId);
+        notRevokedToken = token(UUID.randomUUID().toString());
+        revokedToken = token(revokedId);
+    }
+
+    @Benchmark
+    public boolean notRevoked() {
+        return denylist.isRevoked(notRevokedToken);
+    }
+
+    @Benchmark
+    public boolean revoked() {
+        return denylist.isRevoked(revokedToken);
+    }
+
+    private static VerifiedToken token(String tokenId) {
+        return new VerifiedToken("user", 1L, "user@example.com", List.of("ROLE_GUEST"),
+                Instant.now().plusSeconds(800), null, 0, tokenId, null, 0, false);
+    }
+}
@@ -0,0 +1,94 @@
+package ru.danilgordienko.user_auth_service.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.danilgordienko.user_auth_service.config.AccessTokenFormat;
+import ru.danilgordienko.user_auth_service.config.AccessTokenService;
+import ru.danilgordienko.user_auth_service.config.AuthMetrics;
+import ru.danilgordienko.user_auth_service.config.JWTService;
+import ru.danilgordienko.user_auth_service.config.OpaqueTokenService;
+import ru.danilgordienko.user_auth_service.config.SigningAlgorithm;
+import ru.danilgordienko.user_auth_service.model.AccessToken;
+import ru.danilgordienko.user_auth_service.model.IssuedAccessToken;
+import ru.danilgordienko.user_auth_service.model.User;
+import ru.danilgordienko.user_auth_service.model.UserDetailsImpl;
+import ru.danilgordienko.user_auth_service.model.VerifiedToken;
+import ru.danilgordienko.user_auth_service.repository.AccessTokenRepository;
+import ru.danilgordienko.user_auth_service.repository.UserRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+// Проверка access токена в разных форматах: jwt - разбор и проверка подписи,
+// opaque - SHA-256 токена и попадание в локальный кеш. Размер заголовка Authorization
+// выводится при подготовке: "Authorization header, <format>: N bytes".
+// БД заменена заглушкой, промах кеша стоит столько же плюс один SELECT по уникальному индексу
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccessTokenFormatBenchmark {
+
+    @Param({"JWT", "OPAQUE"})
+    public AccessTokenFormat format;
+
+    // для opaque алгоритм подписи не влияет на результат
+    @Param({"HS256", "ES256"})
+    public SigningAlgorithm algorithm;
+
+    private AccessTokenService accessTokenService;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        AuthMetrics authMetrics = BenchmarkFixtures.authMetrics();
+        JWTService jwtService = BenchmarkFixtures.jwtService(authMetrics, algorithm);
+        OpaqueTokenService opaqueTokenService = new OpaqueTokenService(accessTokenRepository(), userRepository(),
+                authMetrics, new SimpleMeterRegistry(), 100_000, Duration.ofMinutes(1), Duration.ofSeconds(10));
+        ReflectionTestUtils.setField(opaqueTokenService, "accessExpiration", 800_000);
+
+        accessTokenService = new AccessTokenService(jwtService, opaqueTokenService, List.of());
+        ReflectionTestUtils.setField(accessTokenService, "format", format);
+        UserDetailsImpl user = BenchmarkFixtures.user();
+        token = accessTokenService.issue(user).value();
+        System.out.printf("Authorization header, %s: %d bytes%n", format, ("Bearer " + token).length());
+    }
+
+    @Benchmark
+    public VerifiedToken verify() {
+        return accessTokenService.verify(token);
+    }
+
+    @Benchmark
+    public IssuedAccessToken issue() {
+        return accessTokenService.issue(BenchmarkFixtures.user());
+    }
+
+    // репозитории без БД: save ничего не делает, поиск всегда находит строку
+    private static AccessTokenRepository accessTokenRepository() {
+        AccessToken row = AccessToken.builder()
+                .user(User.builder().id(1L).build())
+                .login("user")
+                .roles("ROLE_GUEST")
+                .expiresAt(Instant.now().plus(Duration.ofDays(1)))
+                .build();
+        return BenchmarkFixtures.stub(AccessTokenRepository.class, (method, args) -> switch (method) {
+            case "save" -> args[0];
+            case "findByTokenHash" -> Optional.of(row);
+            default -> throw new UnsupportedOperationException(method);
+        });
+    }
+
+    private static UserRepository userRepository() {
+        return BenchmarkFixtures.stub(UserRepository.class, (method, args) -> switch (method) {
+            case "getReferenceById" -> User.builder().id((Long) args[0]).build();
+            default -> throw new UnsupportedOperationException(method);
+        });
+    }
+}
@@ -0,0 +1,80 @@
+package ru.danilgordienko.user_auth_service.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Сравнивает JSON-результат JMH с сохраненным baseline:
+// время (или пропускная способность) и аллокации на операцию по каждому бенчмарку с параметрами.
+// Код возврата 1, если хоть один бенчмарк стал медленнее больше чем на порог в процентах
+public final class BenchmarkBaselineDiff {
+
+    private static final String ALLOC_NORM = "gc.alloc.rate.norm";
+
+    private BenchmarkBaselineDiff() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: BenchmarkBaselineDiff <baseline.json> <result.json> [threshold-percent]");
+            System.exit(2);
+        }
+        File baselineFile = new File(args[0]);
+        if (!baselineFile.isFile()) {
+            System.err.println("baseline not found: " + args[0] + ", pass -Djmh.baseline=<baseline.json>");
+            System.exit(2);
+        }
+        Map<String, JsonNode> baseline = load(baselineFile);
+        Map<String, JsonNode> current = load(new File(args[1]));
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10.0;
+
+        boolean regressed = false;
+        System.out.printf("%-80s %12s %12s %-6s %9s  %s%n", "benchmark", "baseline", "current", "unit", "change", "alloc B/op");
+        for (Map.Entry<String, JsonNode> entry : current.entrySet()) {
+            JsonNode now = entry.getValue();
+            JsonNode before = baseline.get(entry.getKey());
+            double score = now.path("primaryMetric").path("score").asDouble();
+            String unit = now.path("primaryMetric").path("scoreUnit").asText();
+            if (before == null) {
+                System.out.printf("%-80s %12s %12.3f %-6s %9s  %s (new)%n", entry.getKey(), "-", score, unit, "-", alloc(now));
+                continue;
+            }
+            double previous = before.path("primaryMetric").path("score").asDouble();
+            double change = (score - previous) / previous * 100;
+            // для thrpt больше - лучше, для остальных режимов больше - хуже
+            double slowdown = "thrpt".equals(now.path("mode").asText()) ? -change : change;
+            boolean worse = slowdown > threshold;
+            regressed |= worse;
+            System.out.printf("%-80s %12.3f %12.3f %-6s %+8.1f%%  %s -> %s%s%n", entry.getKey(), previous, score, unit,
+                    change, alloc(before), alloc(now), worse ? "  REGRESSION" : "");
+        }
+        for (String removed : baseline.keySet()) {
+            if (!current.containsKey(removed)) {
+                System.out.printf("%-80s  (missing in current run)%n", removed);
+            }
+        }
+        System.exit(regressed ? 1 : 0);
+    }
+
+    // ключ - имя бенчмарка и значения @Param, чтобы сравнивать одинаковые конфигурации
+    private static Map<String, JsonNode> load(File file) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file)) {
+            StringBuilder key = new StringBuilder(result.path("benchmark").asText()
+                    .replace("ru.danilgordienko.user_auth_service.benchmark.", ""));
+            result.path("params").properties().forEach(param ->
+                    key.append(' ').append(param.getKey()).append('=').append(param.getValue().asText()));
+            results.put(key.toString(), result);
+        }
+        return results;
+    }
+
+    private static String alloc(JsonNode result) {
+        JsonNode alloc = result.path("secondaryMetrics").path(ALLOC_NORM);
+        return alloc.isMissingNode() ? "-" : String.format("%.0f", alloc.path("score").asDouble());
+    }
+}
@@ -0,0 +1,73 @@
+package ru.danilgordienko.user_auth_service.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.danilgordienko.user_auth_service.config.AuthMetrics;
+import ru.danilgordienko.user_auth_service.config.JWTService;
+import ru.danilgordienko.user_auth_service.config.SigningAlgorithm;
+import ru.danilgordienko.user_auth_service.model.UserDetailsImpl;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.Properties;
+import java.util.Set;
+
+// Общие объекты бенчмарков, собранные без Spring-контекста
+final class BenchmarkFixtures {
+
+    static final String SECRET = "VGhpcyBpcyBhIHZlcnkgc2VjdXJlIHNlY3JldCBrZXkgZm9yIEpXVHMhIQ==";
+
+    private BenchmarkFixtures() {
+    }
+
+    // метрики включены, как в проде
+    static AuthMetrics authMetrics() {
+        return new AuthMetrics(new SimpleMeterRegistry(), true);
+    }
+
+    static JWTService jwtService(AuthMetrics authMetrics) {
+        return jwtService(authMetrics, SigningAlgorithm.HS256);
+    }
+
+    // для es256/eddsa пара ключей генерируется при init
+    static JWTService jwtService(AuthMetrics authMetrics, SigningAlgorithm algorithm) {
+        JWTService jwtService = new JWTService(authMetrics);
+        ReflectionTestUtils.setField(jwtService, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtService, "accessExpiration", 800_000);
+        ReflectionTestUtils.setField(jwtService, "refreshExpiration", 80_000_000);
+        ReflectionTestUtils.setField(jwtService, "signingAlgorithm", algorithm);
+        ReflectionTestUtils.setField(jwtService, "privateKeyPath", "");
+        ReflectionTestUtils.setField(jwtService, "publicKeyPath", "");
+        ReflectionTestUtils.setField(jwtService, "keyId", "");
+        ReflectionTestUtils.setField(jwtService, "keyDir", "");
+        ReflectionTestUtils.setField(jwtService, "retireAfter", Duration.ZERO);
+        jwtService.init();
+        return jwtService;
+    }
+
+    static UserDetailsImpl user() {
+        return new UserDetailsImpl(1L, "user", "password", "user@example.com", Set.of("GUEST", "PREMIUM_USER"));
+    }
+
+    // реализация интерфейса (обычно репозитория) без БД: вызов метода отдается handler по имени метода
+    static <T> T stub(Class<T> type, StubHandler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> handler.invoke(method.getName(), args)));
+    }
+
+    interface StubHandler {
+        Object invoke(String method, Object[] args);
+    }
+
+    // application.properties из src/main/resources, чтобы мерить с настройками приложения
+    static Properties applicationProperties() {
+        try {
+            return PropertiesLoaderUtils.loadAllProperties("application.properties");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
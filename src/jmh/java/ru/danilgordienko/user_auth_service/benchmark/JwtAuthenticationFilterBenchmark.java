@@ -0,0 +1,131 @@
+package ru.danilgordienko.user_auth_service.benchmark;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.OutputStreamAppender;
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.danilgordienko.user_auth_service.config.AccessTokenService;
+import ru.danilgordienko.user_auth_service.config.AuthMetrics;
+import ru.danilgordienko.user_auth_service.config.AuthenticationMode;
+import ru.danilgordienko.user_auth_service.config.JWTAuthenticationFilter;
+import ru.danilgordienko.user_auth_service.config.JWTService;
+import ru.danilgordienko.user_auth_service.model.UserDetailsImpl;
+
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Стоимость прохода запроса через JWT-фильтр в зависимости от логирования:
+// off - уровень WARN, записи горячего пути отсекаются до форматирования,
+// sync - DEBUG в синхронный appender (форматирование и запись в потоке запроса),
+// async - DEBUG через AsyncAppender, поток запроса только кладет запись в очередь
+// и от источника principal: claims - из токена, database - через UserDetailsService
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtAuthenticationFilterBenchmark {
+
+    private static final FilterChain NO_OP_CHAIN = (request, response) -> { };
+
+    @Param({"off", "sync", "async"})
+    public String logging;
+
+    @Param({"claims", "database"})
+    public String mode;
+
+    private JWTAuthenticationFilter filter;
+    private String authorization;
+    private Logger filterLogger;
+    private OutputStreamAppender<ILoggingEvent> sink;
+    private AsyncAppender async;
+
+    @Setup
+    public void setUp() throws Exception {
+        AuthMetrics authMetrics = BenchmarkFixtures.authMetrics();
+        JWTService jwtService = BenchmarkFixtures.jwtService(authMetrics);
+        UserDetailsImpl user = BenchmarkFixtures.user();
+        authorization = "Bearer " + jwtService.generateAccessToken(user);
+
+        // в database-режиме пользователь берется из заглушки вместо кеша и БД:
+        // измеряется фильтр, а не загрузка пользователя
+        filter = new JWTAuthenticationFilter(new AccessTokenService(jwtService, null, List.of()), login -> user,
+                authMetrics);
+        ReflectionTestUtils.setField(filter, "authenticationMode", AuthenticationMode.valueOf(mode.toUpperCase()));
+        filter.afterPropertiesSet();
+
+        configureLogging();
+    }
+
+    private void configureLogging() {
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        filterLogger = context.getLogger(JWTAuthenticationFilter.class);
+        filterLogger.detachAndStopAllAppenders();
+        filterLogger.setAdditive(false);
+
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern("%d{ISO8601} %-5level [%thread] %logger{36} - %msg%n");
+        encoder.start();
+
+        sink = new OutputStreamAppender<>();
+        sink.setContext(context);
+        sink.setEncoder(encoder);
+        sink.setOutputStream(OutputStream.nullOutputStream());
+        sink.start();
+
+        switch (logging) {
+            case "off" -> {
+                filterLogger.setLevel(Level.WARN);
+                filterLogger.addAppender(sink);
+            }
+            case "sync" -> {
+                filterLogger.setLevel(Level.DEBUG);
+                filterLogger.addAppender(sink);
+            }
+            case "async" -> {
+                async = new AsyncAppender();
+                async.setContext(context);
+                async.setQueueSize(8192);
+                async.setDiscardingThreshold(20);
+                async.setNeverBlock(true);
+                async.addAppender(sink);
+                async.start();
+                filterLogger.setLevel(Level.DEBUG);
+                filterLogger.addAppender(async);
+            }
+            default -> throw new IllegalArgumentException("Неизвестный режим логирования: " + logging);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        filterLogger.detachAndStopAllAppenders();
+        sink.stop();
+    }
+
+    @Benchmark
+    public int filter() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/users/me");
+        request.addHeader("Authorization", authorization);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        try {
+            filter.doFilter(request, response, NO_OP_CHAIN);
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+        return response.getStatus();
+    }
+}
@@ -0,0 +1,90 @@
+package ru.danilgordienko.user_auth_service.benchmark;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+import ru.danilgordienko.user_auth_service.config.JWTService;
+import ru.danilgordienko.user_auth_service.config.SigningAlgorithm;
+import ru.danilgordienko.user_auth_service.model.IssuedToken;
+import ru.danilgordienko.user_auth_service.model.UserDetailsImpl;
+import ru.danilgordienko.user_auth_service.model.VerifiedToken;
+
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Стоимость подписи и разбора одного токена: с закешированным ключом/парсером
+// и по-старому, когда они собираются из секрета на каждый вызов (только HMAC).
+// algorithm - алгоритм подписи закешированных вариантов
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtServiceBenchmark {
+
+    private static final String SECRET = BenchmarkFixtures.SECRET;
+
+    @Param({"HS256", "ES256", "EDDSA"})
+    public SigningAlgorithm algorithm;
+
+    private JWTService jwtService;
+    private UserDetailsImpl user;
+    private String token;
+    private String hmacToken;
+    private UUID familyId;
+    private String accessTokenId;
+
+    @Setup
+    public void setUp() {
+        jwtService = BenchmarkFixtures.jwtService(BenchmarkFixtures.authMetrics(), algorithm);
+        user = BenchmarkFixtures.user();
+        token = jwtService.generateAccessToken(user);
+        hmacToken = BenchmarkFixtures.jwtService(BenchmarkFixtures.authMetrics()).generateAccessToken(user);
+        familyId = UUID.randomUUID();
+        accessTokenId = UUID.randomUUID().toString();
+    }
+
+    @Benchmark
+    public String signCached() {
+        return jwtService.generateAccessToken(user);
+    }
+
+    @Benchmark
+    public IssuedToken signRefreshCached() {
+        return jwtService.generateRefreshToken(user, familyId, 1, accessTokenId);
+    }
+
+    // то, что делает фильтр: разбор, проверка подписи и сборка VerifiedToken
+    @Benchmark
+    public VerifiedToken verify() {
+        return jwtService.verify(token);
+    }
+
+    @Benchmark
+    public String signUncached() {
+        return Jwts.builder()
+                .subject(user.getUsername())
+                .issuedAt(new Date())
+                .expiration(new Date(System.currentTimeMillis() + 800_000))
+                .claim("id", user.getId())
+                .claim("email", user.getEmail())
+                .claim("roles", user.getAuthorities().stream()
+                        .map(Object::toString)
+                        .toList())
+                .signWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET)))
+                .compact();
+    }
+
+    @Benchmark
+    public String parseUncached() {
+        return Jwts.parser()
+                .verifyWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET)))
+                .build()
+                .parseSignedClaims(hmacToken)
+                .getPayload()
+                .getSubject();
+    }
+}
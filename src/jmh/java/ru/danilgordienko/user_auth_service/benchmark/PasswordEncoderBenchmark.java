@@ -0,0 +1,65 @@
+package ru.danilgordienko.user_auth_service.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.danilgordienko.user_auth_service.config.PasswordEncoderFactory;
+
+import java.time.Duration;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+// Стоимость хеширования и проверки пароля с параметрами из application.properties.
+// Параметры можно переопределить, например -p algorithm=argon2 или -p strength=12 (стоимость bcrypt)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PasswordEncoderBenchmark {
+
+    // configured - значение из application.properties
+    @Param("configured")
+    public String algorithm;
+
+    @Param("configured")
+    public String strength;
+
+    private PasswordEncoder encoder;
+    private String hash;
+
+    @Setup
+    public void setUp() {
+        Properties properties = BenchmarkFixtures.applicationProperties();
+        PasswordEncoderFactory factory = new PasswordEncoderFactory();
+        ReflectionTestUtils.setField(factory, "algorithm",
+                configured(algorithm, properties, "app.security.password.algorithm", "bcrypt"));
+        ReflectionTestUtils.setField(factory, "bcryptStrength",
+                Integer.parseInt(configured(strength, properties, "app.security.password.bcrypt.strength", "10")));
+        ReflectionTestUtils.setField(factory, "argon2Memory",
+                Integer.parseInt(properties.getProperty("app.security.password.argon2.memory", "16384")));
+        ReflectionTestUtils.setField(factory, "argon2Iterations",
+                Integer.parseInt(properties.getProperty("app.security.password.argon2.iterations", "2")));
+        ReflectionTestUtils.setField(factory, "argon2Parallelism",
+                Integer.parseInt(properties.getProperty("app.security.password.argon2.parallelism", "1")));
+        // без калибровки: мерим ровно настроенную стоимость
+        ReflectionTestUtils.setField(factory, "targetHashTime", Duration.ZERO);
+        encoder = factory.create();
+        hash = encoder.encode("password");
+    }
+
+    private static String configured(String param, Properties properties, String key, String defaultValue) {
+        return "configured".equals(param) ? properties.getProperty(key, defaultValue) : param;
+    }
+
+    @Benchmark
+    public String encode() {
+        return encoder.encode("password");
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return encoder.matches("password", hash);
+    }
+}
@@ -0,0 +1,41 @@
+package ru.danilgordienko.user_auth_service.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.core.GrantedAuthority;
+import ru.danilgordienko.user_auth_service.config.JWTService;
+import ru.danilgordienko.user_auth_service.model.UserDetailsImpl;
+import ru.danilgordienko.user_auth_service.model.VerifiedToken;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+// getAuthorities вызывается фильтром на каждый запрос и собирает authorities заново,
+// fromToken - сборка principal из claims в режиме claims
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserDetailsBenchmark {
+
+    private UserDetailsImpl user;
+    private VerifiedToken token;
+
+    @Setup
+    public void setUp() {
+        JWTService jwtService = BenchmarkFixtures.jwtService(BenchmarkFixtures.authMetrics());
+        user = BenchmarkFixtures.user();
+        token = jwtService.verify(jwtService.generateAccessToken(user));
+    }
+
+    @Benchmark
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return user.getAuthorities();
+    }
+
+    @Benchmark
+    public UserDetailsImpl fromToken() {
+        return UserDetailsImpl.fromToken(token);
+    }
+}
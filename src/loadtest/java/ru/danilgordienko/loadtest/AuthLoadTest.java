@@ -0,0 +1,306 @@
+package ru.danilgordienko.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import ru.danilgordienko.user_auth_service.UserAuthServiceApplication;
+import ru.danilgordienko.user_auth_service.dto.AuthResponse;
+
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Нагрузочный прогон auth API: поднимает приложение на H2 в режиме PostgreSQL и гоняет по очереди сценарии
+// register, login, refresh, authenticated (запрос под access токеном) и logout из loadtest.concurrency потоков.
+// По каждому сценарию: пропускная способность, p50/p99/p999, ошибки и число SQL-операторов на запрос.
+// Запуск: mvn -Ploadtest test-compile exec:exec [-Dloadtest.args="--loadtest.concurrency=32 ..."]
+public final class AuthLoadTest {
+
+    private static final String BASE_PATH = "/api/v1/auth";
+    private static final String PASSWORD = "password";
+
+    // поверх application.properties, но ниже аргументов командной строки
+    private static final Map<String, String> DEFAULTS = Map.ofEntries(
+            Map.entry("spring.datasource.url",
+                    "jdbc:h2:mem:loadtest;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1"),
+            Map.entry("spring.datasource.driver-class-name", "org.h2.Driver"),
+            Map.entry("spring.datasource.username", "sa"),
+            Map.entry("spring.datasource.password", ""),
+            Map.entry("spring.jpa.properties.hibernate.dialect", "org.hibernate.dialect.H2Dialect"),
+            Map.entry("spring.jpa.hibernate.ddl-auto", "create"),
+            Map.entry("server.port", "0"),
+            Map.entry("app.security.secret", "VGhpcyBpcyBhIHZlcnkgc2VjdXJlIHNlY3JldCBrZXkgZm9yIEpXVHMhIQ=="),
+            Map.entry("app.security.access-expiration", "800000"),
+            Map.entry("app.security.refresh-expiration", "80000000"),
+            // иначе bcrypt заслоняет все остальное; для честной цены логина --app.security.password.bcrypt.strength=10
+            Map.entry("app.security.password.bcrypt.strength", "4"),
+            // logout-сценарию нужны заранее выданные токены, лимит сессий удалил бы их при логине
+            Map.entry("app.security.max-sessions-per-user", "0"),
+            // LISTEN/NOTIFY есть только в Postgres, прогон идет на одном узле
+            Map.entry("app.invalidation.enabled", "false"),
+            Map.entry("logging.level.ru.danilgordienko", "WARN"));
+
+    private final Environment environment;
+    private final StatementCounter statementCounter;
+    private final String baseUrl;
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .build();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<Integer, Session[]> ownSessions = new ConcurrentHashMap<>();
+
+    private final int users;
+    private final int concurrency;
+    private final Duration duration;
+    private final Duration warmup;
+    private final int logoutRequests;
+
+    private AuthLoadTest(ConfigurableApplicationContext context) {
+        this.environment = context.getEnvironment();
+        this.statementCounter = context.getBean(StatementCounter.class);
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        this.baseUrl = "http://localhost:" + port;
+        this.concurrency = environment.getProperty("loadtest.concurrency", Integer.class, 16);
+        this.users = Math.max(concurrency, environment.getProperty("loadtest.users", Integer.class, 200));
+        this.duration = environment.getProperty("loadtest.duration", Duration.class, Duration.ofSeconds(10));
+        this.warmup = environment.getProperty("loadtest.warmup", Duration.class, Duration.ofSeconds(3));
+        this.logoutRequests = environment.getProperty("loadtest.logout-requests", Integer.class, 2000);
+    }
+
+    public static void main(String[] args) throws Exception {
+        DEFAULTS.forEach((key, value) -> {
+            if (System.getProperty(key) == null) {
+                System.setProperty(key, value);
+            }
+        });
+        // бины прогона лежат вне пакета приложения и подключаются только здесь
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(UserAuthServiceApplication.class)
+                .sources(StatementCounter.class, LoadTestProbeController.class)
+                .run(args);
+        try {
+            new AuthLoadTest(context).run();
+        } finally {
+            context.close();
+        }
+    }
+
+    private void run() throws Exception {
+        System.out.printf("users=%d concurrency=%d duration=%s warmup=%s%n", users, concurrency, duration, warmup);
+        List<Session> sessions = new ArrayList<>();
+        for (int i = 0; i < users; i++) {
+            String login = "user-" + i;
+            sessions.add(new Session(login, register(login)));
+        }
+
+        List<ScenarioResult> results = new ArrayList<>();
+        AtomicInteger registered = new AtomicInteger(users);
+        results.add(timed("register", worker -> post("/register", registerBody("user-" + registered.getAndIncrement()), null)));
+
+        results.add(timed("login", worker -> {
+            Session session = sessionFor(sessions, worker);
+            return post("/login", loginBody(session.login), null);
+        }));
+
+        results.add(timed("authenticated", worker -> {
+            Session session = sessionFor(sessions, worker);
+            return send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/v1/loadtest/me"))
+                    .header("Authorization", "Bearer " + session.accessToken)
+                    .GET()
+                    .build());
+        }));
+
+        // refresh ротирует токен, поэтому у каждого потока свои пользователи
+        results.add(timed("refresh", worker -> {
+            Session session = sessionFor(sessions, worker);
+            HttpResponse<String> response = post("/refresh", "", session.refreshToken);
+            if (response.statusCode() == 200) {
+                session.update(objectMapper.readValue(response.body(), AuthResponse.class));
+            }
+            return response;
+        }));
+
+        results.add(logout(sessions));
+
+        print(results);
+        File output = new File(environment.getProperty("loadtest.result", "target/loadtest-result.json"));
+        objectMapper.enable(SerializationFeature.INDENT_OUTPUT).writeValue(output, results);
+        System.out.println("Result saved to " + output.getAbsolutePath());
+    }
+
+    // logout расходует токены, поэтому гоняется фиксированное число запросов по заранее выданным токенам
+    private ScenarioResult logout(List<Session> sessions) throws Exception {
+        List<Queue<String>> tokens = new ArrayList<>();
+        for (int worker = 0; worker < concurrency; worker++) {
+            Queue<String> queue = new ArrayDeque<>();
+            for (int i = 0; i < logoutRequests / concurrency; i++) {
+                Session session = sessionFor(sessions, worker);
+                queue.add(login(session.login).getRefresh_token());
+            }
+            tokens.add(queue);
+        }
+        return measure("logout", Long.MAX_VALUE, worker -> {
+            String token = tokens.get(worker).poll();
+            return token == null ? null : post("/logout", "", token);
+        });
+    }
+
+    private ScenarioResult timed(String name, Request request) throws Exception {
+        measure(name, System.nanoTime() + warmup.toNanos(), request);
+        return measure(name, System.nanoTime() + duration.toNanos(), request);
+    }
+
+    private ScenarioResult measure(String name, long deadline, Request request) throws Exception {
+        // клиентские потоки виртуальные: при тысячах соединений платформенные потоки клиента
+        // отнимали бы CPU у сервера в том же процессе
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        List<Future<WorkerResult>> futures = new ArrayList<>();
+        statementCounter.reset();
+        long start = System.nanoTime();
+        for (int worker = 0; worker < concurrency; worker++) {
+            int id = worker;
+            futures.add(executor.submit(() -> runWorker(id, deadline, request)));
+        }
+        Histogram latency = new Histogram(3);
+        long errors = 0;
+        for (Future<WorkerResult> future : futures) {
+            WorkerResult result = future.get();
+            latency.add(result.latency);
+            errors += result.errors;
+        }
+        long elapsed = System.nanoTime() - start;
+        long statements = statementCounter.get();
+        executor.shutdown();
+        return ScenarioResult.of(name, latency, errors, elapsed, statements);
+    }
+
+    private WorkerResult runWorker(int worker, long deadline, Request request) throws Exception {
+        Histogram latency = new Histogram(3);
+        long errors = 0;
+        while (System.nanoTime() < deadline) {
+            long start = System.nanoTime();
+            HttpResponse<String> response = request.send(worker);
+            if (response == null) {
+                break;
+            }
+            latency.recordValue(System.nanoTime() - start);
+            if (response.statusCode() / 100 != 2) {
+                errors++;
+            }
+        }
+        return new WorkerResult(latency, errors);
+    }
+
+    // пользователи делятся между потоками без пересечений: поток worker берет worker, worker + concurrency, ...
+    private Session sessionFor(List<Session> sessions, int worker) {
+        int perWorker = sessions.size() / concurrency;
+        Session[] own = ownSessions.computeIfAbsent(worker, w -> {
+            Session[] slice = new Session[perWorker];
+            for (int i = 0; i < perWorker; i++) {
+                slice[i] = sessions.get(w + i * concurrency);
+            }
+            return slice;
+        });
+        return own[ThreadLocalRandom.current().nextInt(own.length)];
+    }
+
+    private AuthResponse register(String login) throws Exception {
+        return parse(post("/register", registerBody(login), null));
+    }
+
+    private AuthResponse login(String login) throws Exception {
+        return parse(post("/login", loginBody(login), null));
+    }
+
+    private AuthResponse parse(HttpResponse<String> response) throws Exception {
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Unexpected status " + response.statusCode() + ": " + response.body());
+        }
+        return objectMapper.readValue(response.body(), AuthResponse.class);
+    }
+
+    private static String registerBody(String login) {
+        return "{\"login\":\"" + login + "\",\"email\":\"" + login + "@example.com\",\"password\":\"" + PASSWORD + "\"}";
+    }
+
+    private static String loginBody(String login) {
+        return "{\"login\":\"" + login + "\",\"password\":\"" + PASSWORD + "\"}";
+    }
+
+    private HttpResponse<String> post(String path, String body, String bearer) throws Exception {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + BASE_PATH + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body));
+        if (bearer != null) {
+            builder.header("Authorization", "Bearer " + bearer);
+        }
+        return send(builder.build());
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws Exception {
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static void print(List<ScenarioResult> results) {
+        System.out.println();
+        System.out.println("SQL statements include background work during the run (audit flushes)");
+        System.out.printf("%-14s %9s %10s %9s %9s %9s %9s %7s %9s%n",
+                "scenario", "requests", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms", "errors", "sql/req");
+        for (ScenarioResult r : results) {
+            System.out.printf("%-14s %9d %10.1f %9.2f %9.2f %9.2f %9.2f %7d %9.2f%n",
+                    r.scenario(), r.requests(), r.throughput(), r.p50Ms(), r.p99Ms(), r.p999Ms(), r.maxMs(),
+                    r.errors(), r.statementsPerRequest());
+        }
+    }
+
+    @FunctionalInterface
+    private interface Request {
+        // null - работа для этого потока закончилась
+        HttpResponse<String> send(int worker) throws Exception;
+    }
+
+    private record WorkerResult(Histogram latency, long errors) {
+    }
+
+    public record ScenarioResult(String scenario, long requests, double throughput,
+                                 double p50Ms, double p99Ms, double p999Ms, double maxMs,
+                                 long errors, long statements, double statementsPerRequest) {
+
+        static ScenarioResult of(String scenario, Histogram latency, long errors, long elapsedNanos, long statements) {
+            long requests = latency.getTotalCount();
+            return new ScenarioResult(scenario, requests,
+                    requests / (elapsedNanos / 1e9),
+                    latency.getValueAtPercentile(50) / 1e6,
+                    latency.getValueAtPercentile(99) / 1e6,
+                    latency.getValueAtPercentile(99.9) / 1e6,
+                    latency.getMaxValue() / 1e6,
+                    errors, statements,
+                    requests == 0 ? 0 : (double) statements / requests);
+        }
+    }
+
+    private static final class Session {
+        private final String login;
+        private volatile String accessToken;
+        private volatile String refreshToken;
+
+        Session(String login, AuthResponse tokens) {
+            this.login = login;
+            update(tokens);
+        }
+
+        void update(AuthResponse tokens) {
+            this.accessToken = tokens.getAccess_token();
+            this.refreshToken = tokens.getRefresh_token();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package ru.danilgordienko.loadtest;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+// Защищенный endpoint без бизнес-логики: в API сервиса нет читающих запросов под токеном,
+// а нагрузка нужна именно на JWTAuthenticationFilter. Регистрируется явно в AuthLoadTest
+@RestController
+public class LoadTestProbeController {
+
+    @GetMapping("/api/v1/loadtest/me")
+    public String me(Authentication authentication) {
+        return authentication.getName();
+    }
+}
@@ -0,0 +1,140 @@
+package ru.danilgordienko.user_auth_service.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.danilgordienko.user_auth_service.model.InvalidationEvent.AccessTokenRevoked;
+import ru.danilgordienko.user_auth_service.model.InvalidationEvent.Resync;
+import ru.danilgordienko.user_auth_service.model.RevokedAccessToken;
+import ru.danilgordienko.user_auth_service.model.VerifiedToken;
+import ru.danilgordienko.user_auth_service.repository.RevokedAccessTokenRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Список отозванных до истечения access токенов (по jti), проверяется JWTAuthenticationFilter на каждый запрос.
+// Перед точным поиском стоит фильтр Блума: для неотозванного токена - а это почти все запросы -
+// проверка заканчивается на нескольких битах без аллокаций и без обращения к map.
+// Запись живет до истечения токена. Отзывы пишутся в revoked_access_tokens: при старте список
+// восстанавливается из БД. Отзывы с других узлов приходят через InvalidationBus, а если он выключен
+// или уведомление потерялось - подхватываются из БД раз в sync-interval
+@Slf4j
+@Component
+public class AccessTokenDenylist implements TokenRevocationCheck {
+
+    // запас на расхождение часов узлов и долгие транзакции при догрузке отзывов с других узлов
+    private static final Duration SYNC_OVERLAP = Duration.ofMinutes(1);
+
+    private final RevokedAccessTokenRepository revokedAccessTokenRepository;
+    private final int expectedEntries;
+    private final double falsePositiveRate;
+    // jti -> время истечения токена
+    private final Map<String, Instant> revoked = new ConcurrentHashMap<>();
+    // подменяется целиком при пересборке; добавление и пересборка идут под this, чтение без блокировок
+    private volatile BloomFilter bloomFilter;
+    private volatile Instant lastSync = Instant.EPOCH;
+
+    @Value("${app.security.access-expiration}")
+    private int accessExpiration;
+
+    public AccessTokenDenylist(RevokedAccessTokenRepository revokedAccessTokenRepository,
+                               MeterRegistry meterRegistry,
+                               @Value("${app.security.revocation.expected-entries:100000}") int expectedEntries,
+                               @Value("${app.security.revocation.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.revokedAccessTokenRepository = revokedAccessTokenRepository;
+        this.expectedEntries = expectedEntries;
+        this.falsePositiveRate = falsePositiveRate;
+        this.bloomFilter = BloomFilter.create(expectedEntries, falsePositiveRate);
+        meterRegistry.gaugeMapSize("auth.access_tokens.revoked", Tags.empty(), revoked);
+    }
+
+    @PostConstruct
+    public void load() {
+        sync();
+        log.info("Loaded {} revoked access tokens", revoked.size());
+    }
+
+    @Override
+    public boolean isRevoked(VerifiedToken token) {
+        String tokenId = token.tokenId();
+        // токены, выданные до появления jti, отозвать нельзя
+        if (tokenId == null || !bloomFilter.mightContain(tokenId)) {
+            return false;
+        }
+        Instant expiresAt = revoked.get(tokenId);
+        return expiresAt != null && expiresAt.isAfter(Instant.now());
+    }
+
+    // отзывает access токен, выданный не раньше чем access-expiration назад; возвращает, до какого момента
+    public Instant revoke(String tokenId) {
+        Instant expiresAt = Instant.now().plusMillis(accessExpiration);
+        revoke(tokenId, expiresAt);
+        return expiresAt;
+    }
+
+    public void revoke(String tokenId, Instant expiresAt) {
+        revokedAccessTokenRepository.insert(tokenId, expiresAt, Instant.now());
+        remember(tokenId, expiresAt);
+    }
+
+    // отзыв на другом узле, пришедший через InvalidationBus
+    @EventListener
+    public void onAccessTokenRevoked(AccessTokenRevoked event) {
+        remember(event.tokenId(), event.expiresAt());
+    }
+
+    // уведомления могли быть пропущены: перечитываются все действующие отзывы
+    @EventListener
+    public void onResync(Resync event) {
+        lastSync = Instant.EPOCH;
+        sync();
+    }
+
+    // догружает отзывы, сделанные на других узлах, если уведомление о них не дошло
+    @Scheduled(fixedDelayString = "${app.security.revocation.sync-interval:10s}",
+            initialDelayString = "${app.security.revocation.sync-interval:10s}")
+    public void sync() {
+        Instant now = Instant.now();
+        Instant since = lastSync.equals(Instant.EPOCH) ? Instant.EPOCH : lastSync.minus(SYNC_OVERLAP);
+        List<RevokedAccessToken> tokens =
+                revokedAccessTokenRepository.findAllByRevokedAtGreaterThanEqualAndExpiresAtAfter(since, now);
+        for (RevokedAccessToken token : tokens) {
+            remember(token.getTokenId(), token.getExpiresAt());
+        }
+        lastSync = now;
+    }
+
+    // убирает истекшие записи из памяти и из БД и пересобирает фильтр Блума по оставшимся
+    @Scheduled(fixedDelayString = "${app.security.revocation.purge-interval:1m}",
+            initialDelayString = "${app.security.revocation.purge-interval:1m}")
+    public void purge() {
+        Instant now = Instant.now();
+        revokedAccessTokenRepository.deleteExpired(now);
+        rebuild(now);
+    }
+
+    synchronized void rebuild(Instant now) {
+        revoked.values().removeIf(expiresAt -> !expiresAt.isAfter(now));
+        // фильтр растет вместе со списком, чтобы доля ложных срабатываний не поднималась
+        BloomFilter rebuilt = BloomFilter.create(Math.max(expectedEntries, revoked.size() * 2), falsePositiveRate);
+        revoked.keySet().forEach(rebuilt::put);
+        bloomFilter = rebuilt;
+    }
+
+    private synchronized void remember(String tokenId, Instant expiresAt) {
+        revoked.merge(tokenId, expiresAt, (current, added) -> current.isAfter(added) ? current : added);
+        bloomFilter.put(tokenId);
+    }
+
+    int size() {
+        return revoked.size();
+    }
+}
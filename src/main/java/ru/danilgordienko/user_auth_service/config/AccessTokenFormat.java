@@ -0,0 +1,10 @@
+package ru.danilgordienko.user_auth_service.config;
+
+// Какие access токены выдает сервис. Проверяются оба формата независимо от настройки,
+// поэтому переключение не обрывает уже выданные токены
+public enum AccessTokenFormat {
+    // самодостаточный подписанный JWT с claims пользователя
+    JWT,
+    // короткая случайная строка, данные пользователя хранятся в access_tokens
+    OPAQUE
+}
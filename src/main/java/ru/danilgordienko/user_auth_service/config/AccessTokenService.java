@@ -0,0 +1,58 @@
+package ru.danilgordienko.user_auth_service.config;
+
+import io.jsonwebtoken.UnsupportedJwtException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.danilgordienko.user_auth_service.model.IssuedAccessToken;
+import ru.danilgordienko.user_auth_service.model.UserDetailsImpl;
+import ru.danilgordienko.user_auth_service.model.VerifiedToken;
+
+import java.util.List;
+import java.util.UUID;
+
+// Выдача и проверка access токенов в формате app.security.access-token.format.
+// Формат предъявленного токена определяется по префиксу непрозрачного токена.
+// Отзыв (AccessTokenDenylist, TokenVersions) проверяется здесь же - одинаково для фильтра и /introspect
+@Service
+@RequiredArgsConstructor
+public class AccessTokenService {
+
+    private final JWTService jwtService;
+    private final OpaqueTokenService opaqueTokenService;
+    private final List<TokenRevocationCheck> revocationChecks;
+
+    @Value("${app.security.access-token.format:jwt}")
+    private AccessTokenFormat format;
+
+    public IssuedAccessToken issue(UserDetailsImpl user) {
+        String tokenId = UUID.randomUUID().toString();
+        String token = format == AccessTokenFormat.OPAQUE
+                ? opaqueTokenService.issue(user, tokenId)
+                : jwtService.generateAccessToken(user, tokenId);
+        return new IssuedAccessToken(token, tokenId);
+    }
+
+    // refresh токен подписан тем же ключом, но как access токен не принимается: его нельзя отозвать
+    // по jti, и живет он до refresh-expiration
+    public VerifiedToken verify(String token) {
+        if (OpaqueTokenService.isOpaque(token)) {
+            return opaqueTokenService.introspect(token);
+        }
+        VerifiedToken verifiedToken = jwtService.verify(token);
+        if (verifiedToken.refreshToken()) {
+            throw new UnsupportedJwtException("Refresh token cannot be used as an access token");
+        }
+        return verifiedToken;
+    }
+
+    // токен подписан верно, но отозван до истечения
+    public boolean isRevoked(VerifiedToken token) {
+        for (TokenRevocationCheck check : revocationChecks) {
+            if (check.isRevoked(token)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,136 @@
+package ru.danilgordienko.user_auth_service.config;
+
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.MalformedJwtException;
+import io.jsonwebtoken.UnsupportedJwtException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Component;
+import ru.danilgordienko.user_auth_service.exception.PasswordHashingOverloadedException;
+import ru.danilgordienko.user_auth_service.exception.TokenAlreadyRevokedException;
+import ru.danilgordienko.user_auth_service.exception.TokenExpiredException;
+import ru.danilgordienko.user_auth_service.exception.TokenNotFoundException;
+import ru.danilgordienko.user_auth_service.exception.UserNotFoundException;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Таймеры этапов аутентификации: auth.stage{stage, outcome}.
+// Число вызовов каждого исхода - это _count таймера, отдельные счетчики не нужны.
+// Таймер на пару (этап, исход) создается при первом использовании и дальше берется из массива
+// без обращения к реестру, так что на горячем пути остаются только nanoTime и запись в таймер
+@Component
+public class AuthMetrics {
+
+    public enum Stage {
+        PASSWORD_VERIFY("password.verify"),
+        JWT_SIGN("jwt.sign"),
+        JWT_VERIFY("jwt.verify"),
+        // проверка непрозрачного access токена через кеш или БД
+        TOKEN_INTROSPECT("token.introspect"),
+        USER_FIND("user.find"),
+        REFRESH_TOKEN_FIND("refresh_token.find"),
+        REFRESH_TOKEN_SAVE("refresh_token.save"),
+        REFRESH_TOKEN_REVOKE("refresh_token.revoke"),
+        FILTER("filter");
+
+        private final String tag;
+
+        Stage(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    public enum Outcome {
+        SUCCESS("success"),
+        EXPIRED("expired"),
+        MALFORMED("malformed"),
+        // неверная подпись или неверный пароль
+        INVALID("invalid"),
+        REVOKED("revoked"),
+        NOT_FOUND("not-found"),
+        // условное изменение не затронуло строк, причину классифицирует следующий этап
+        NO_MATCH("no-match"),
+        // запрос без токена, фильтр пропускает его дальше
+        ANONYMOUS("anonymous"),
+        // отказ из-за перегрузки пула хеширования
+        REJECTED("rejected"),
+        ERROR("error");
+
+        private final String tag;
+
+        Outcome(String tag) {
+            this.tag = tag;
+        }
+
+        // исход по исключению, которым завершился этап
+        public static Outcome of(Throwable e) {
+            if (e instanceof ExpiredJwtException || e instanceof TokenExpiredException) {
+                return EXPIRED;
+            }
+            if (e instanceof MalformedJwtException || e instanceof UnsupportedJwtException
+                    || e instanceof IllegalArgumentException) {
+                return MALFORMED;
+            }
+            if (e instanceof JwtException || e instanceof BadCredentialsException) {
+                return INVALID;
+            }
+            if (e instanceof TokenAlreadyRevokedException) {
+                return REVOKED;
+            }
+            if (e instanceof UsernameNotFoundException || e instanceof UserNotFoundException
+                    || e instanceof TokenNotFoundException) {
+                return NOT_FOUND;
+            }
+            if (e instanceof PasswordHashingOverloadedException) {
+                return REJECTED;
+            }
+            return ERROR;
+        }
+    }
+
+    private static final int OUTCOMES = Outcome.values().length;
+
+    private final MeterRegistry meterRegistry;
+    private final boolean histograms;
+    private final AtomicReferenceArray<Timer> timers =
+            new AtomicReferenceArray<>(Stage.values().length * OUTCOMES);
+
+    public AuthMetrics(MeterRegistry meterRegistry,
+                       @Value("${app.metrics.auth.histograms:true}") boolean histograms) {
+        this.meterRegistry = meterRegistry;
+        this.histograms = histograms;
+    }
+
+    // записывает длительность этапа, начатого в startNanos = System.nanoTime()
+    public void record(Stage stage, Outcome outcome, long startNanos) {
+        timer(stage, outcome).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void record(Stage stage, Throwable failure, long startNanos) {
+        record(stage, Outcome.of(failure), startNanos);
+    }
+
+    private Timer timer(Stage stage, Outcome outcome) {
+        int index = stage.ordinal() * OUTCOMES + outcome.ordinal();
+        Timer timer = timers.get(index);
+        if (timer == null) {
+            // при гонке реестр вернет один и тот же таймер
+            timer = Timer.builder("auth.stage")
+                    .description("Duration of an authentication stage")
+                    .tag("stage", stage.tag)
+                    .tag("outcome", outcome.tag)
+                    .publishPercentileHistogram(histograms)
+                    .minimumExpectedValue(Duration.ofNanos(1_000))
+                    .maximumExpectedValue(Duration.ofSeconds(5))
+                    .register(meterRegistry);
+            timers.set(index, timer);
+        }
+        return timer;
+    }
+}
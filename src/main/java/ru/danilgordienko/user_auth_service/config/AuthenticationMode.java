@@ -0,0 +1,9 @@
+package ru.danilgordienko.user_auth_service.config;
+
+// Откуда JWTAuthenticationFilter берет данные пользователя для SecurityContext
+public enum AuthenticationMode {
+    // загрузка пользователя из БД на каждый запрос
+    DATABASE,
+    // principal строится из claims проверенного токена
+    CLAIMS
+}
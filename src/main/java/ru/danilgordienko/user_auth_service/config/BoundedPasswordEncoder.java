@@ -0,0 +1,42 @@
+package ru.danilgordienko.user_auth_service.config;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import ru.danilgordienko.user_auth_service.config.AuthMetrics.Outcome;
+import ru.danilgordienko.user_auth_service.config.AuthMetrics.Stage;
+
+// PasswordEncoder, который выполняет encode и matches в PasswordHashingExecutor.
+// Через него идут и регистрация в JwtAuthService, и проверка пароля в DaoAuthenticationProvider
+@RequiredArgsConstructor
+public class BoundedPasswordEncoder implements PasswordEncoder {
+
+    private final PasswordEncoder delegate;
+    private final PasswordHashingExecutor executor;
+    private final AuthMetrics authMetrics;
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return executor.execute(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        // время с учетом ожидания в очереди пула, чистое время хеширования - в auth.password.hashing.time
+        long start = System.nanoTime();
+        boolean matches;
+        try {
+            matches = executor.execute(() -> delegate.matches(rawPassword, encodedPassword));
+        } catch (RuntimeException e) {
+            authMetrics.record(Stage.PASSWORD_VERIFY, e, start);
+            throw e;
+        }
+        authMetrics.record(Stage.PASSWORD_VERIFY, matches ? Outcome.SUCCESS : Outcome.INVALID, start);
+        return matches;
+    }
+
+    // разбор префикса и параметров хеша, без хеширования
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+}
@@ -0,0 +1,294 @@
+package ru.danilgordienko.user_auth_service.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.danilgordienko.user_auth_service.model.InvalidationEvent;
+import ru.danilgordienko.user_auth_service.model.InvalidationEvent.AccessTokenRevoked;
+import ru.danilgordienko.user_auth_service.model.InvalidationEvent.Resync;
+import ru.danilgordienko.user_auth_service.model.InvalidationEvent.UserChanged;
+
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+// Рассылка инвалидаций между узлами через LISTEN/NOTIFY в Postgres, без отдельного брокера.
+// Отправка: события транзакции собираются и уходят одним pg_notify перед коммитом - Postgres доставит
+// его только после коммита, а при откате не доставит вовсе. Прием: отдельное соединение вне пула
+// слушает канал в своем потоке, пришедшие уведомления склеиваются в пачку, повторы отбрасываются,
+// и каждое событие публикуется локально как событие Spring (слушают UserDetailsCache, AccessTokenDenylist
+// и TokenVersions).
+// Пока соединение разорвано, уведомления теряются, поэтому после каждого LISTEN публикуется Resync:
+// кеши сбрасываются и перечитываются из БД
+@Slf4j
+@Component
+public class InvalidationBus implements SmartLifecycle {
+
+    static final String CHANNEL = "auth_invalidation";
+    // предел payload у NOTIFY - 8000 байт
+    static final int MAX_PAYLOAD = 7900;
+    private static final int POLL_TIMEOUT_MILLIS = 1000;
+    private static final Duration MAX_BACKOFF = Duration.ofSeconds(30);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSourceProperties dataSourceProperties;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Counter sentEvents;
+    private final Counter receivedEvents;
+    private final Counter resyncs;
+
+    // выключено - события не рассылаются, каждый узел видит только свои изменения
+    @Value("${app.invalidation.enabled:false}")
+    private boolean enabled;
+    // сколько ждать следующих уведомлений после первого, чтобы применить их одной пачкой
+    @Value("${app.invalidation.batch-window:5ms}")
+    private Duration batchWindow;
+    @Value("${app.invalidation.reconnect-backoff:1s}")
+    private Duration reconnectBackoff;
+
+    private volatile boolean running;
+    private volatile Thread listener;
+    private volatile Connection connection;
+
+    public InvalidationBus(JdbcTemplate jdbcTemplate,
+                           DataSourceProperties dataSourceProperties,
+                           ApplicationEventPublisher eventPublisher,
+                           MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dataSourceProperties = dataSourceProperties;
+        this.eventPublisher = eventPublisher;
+        this.sentEvents = Counter.builder("auth.invalidation.events").tag("direction", "sent")
+                .description("Invalidation events sent to or received from other nodes")
+                .register(meterRegistry);
+        this.receivedEvents = Counter.builder("auth.invalidation.events").tag("direction", "received")
+                .description("Invalidation events sent to or received from other nodes")
+                .register(meterRegistry);
+        this.resyncs = Counter.builder("auth.invalidation.resyncs")
+                .description("Full resyncs after (re)connecting the invalidation listener")
+                .register(meterRegistry);
+    }
+
+    // рассылает событие всем узлам, включая этот; внутри транзакции - только если она закоммитится
+    public void publish(InvalidationEvent event) {
+        if (!enabled) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            send(List.of(event));
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        Set<InvalidationEvent> pending = (Set<InvalidationEvent>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            Set<InvalidationEvent> events = new LinkedHashSet<>();
+            TransactionSynchronizationManager.bindResource(this, events);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    send(events);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(InvalidationBus.this);
+                }
+            });
+            pending = events;
+        }
+        pending.add(event);
+    }
+
+    private void send(Collection<InvalidationEvent> events) {
+        for (String payload : encode(events)) {
+            jdbcTemplate.execute("select pg_notify(?, ?)", (PreparedStatementCallback<Void>) statement -> {
+                statement.setString(1, CHANNEL);
+                statement.setString(2, payload);
+                statement.execute();
+                return null;
+            });
+        }
+        sentEvents.increment(events.size());
+    }
+
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        listener = Thread.ofPlatform().daemon().name("invalidation-listener").start(this::listen);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        Thread thread = listener;
+        if (thread != null) {
+            thread.interrupt();
+        }
+        closeQuietly(connection);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void listen() {
+        Duration backoff = reconnectBackoff;
+        while (running) {
+            try (Connection conn = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                    dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword())) {
+                connection = conn;
+                try (Statement statement = conn.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                log.info("Listening for invalidations on channel {}", CHANNEL);
+                // все, что разослано до LISTEN, мимо этого узла прошло
+                deliver(List.of(new Resync()));
+                backoff = reconnectBackoff;
+                PGConnection pgConnection = conn.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MILLIS);
+                    if (notifications == null || notifications.length == 0) {
+                        continue;
+                    }
+                    Set<InvalidationEvent> batch = new LinkedHashSet<>();
+                    addAll(batch, notifications);
+                    if (!batchWindow.isZero()) {
+                        Thread.sleep(batchWindow.toMillis());
+                        addAll(batch, pgConnection.getNotifications());
+                    }
+                    deliver(batch);
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (!running) {
+                    break;
+                }
+                log.warn("Invalidation listener disconnected, reconnecting in {}: {}", backoff, e.getMessage());
+                try {
+                    Thread.sleep(backoff.toMillis());
+                } catch (InterruptedException interrupted) {
+                    break;
+                }
+                backoff = backoff.multipliedBy(2).compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : backoff.multipliedBy(2);
+            } catch (InterruptedException e) {
+                break;
+            } finally {
+                connection = null;
+            }
+        }
+        log.info("Invalidation listener stopped");
+    }
+
+    private static void addAll(Set<InvalidationEvent> batch, PGNotification[] notifications) {
+        if (notifications == null) {
+            return;
+        }
+        for (PGNotification notification : notifications) {
+            batch.addAll(decode(notification.getParameter()));
+        }
+    }
+
+    // Resync перечитывает все, поэтому остальные события пачки рядом с ним не нужны
+    private void deliver(Collection<InvalidationEvent> events) {
+        if (events.stream().anyMatch(Resync.class::isInstance)) {
+            resyncs.increment();
+            publishLocally(new Resync());
+            return;
+        }
+        receivedEvents.increment(events.size());
+        events.forEach(this::publishLocally);
+    }
+
+    // ошибка одного слушателя не должна останавливать прием остальных событий
+    private void publishLocally(InvalidationEvent event) {
+        try {
+            eventPublisher.publishEvent(event);
+        } catch (RuntimeException e) {
+            log.error("Failed to apply invalidation event {}", event, e);
+        }
+    }
+
+    // строка на событие, строки собираются в payload не длиннее MAX_PAYLOAD:
+    // "U <login в URL-кодировке> <версия токенов>", "R <jti> <истечение в epoch millis>", "S"
+    static List<String> encode(Collection<InvalidationEvent> events) {
+        List<String> payloads = new ArrayList<>();
+        StringBuilder payload = new StringBuilder();
+        for (InvalidationEvent event : events) {
+            String line = switch (event) {
+                case UserChanged user -> "U " + URLEncoder.encode(user.login(), StandardCharsets.UTF_8)
+                        + " " + user.tokenVersion();
+                case AccessTokenRevoked token -> "R " + token.tokenId() + " " + token.expiresAt().toEpochMilli();
+                case Resync resync -> "S";
+            };
+            if (!payload.isEmpty() && payload.length() + 1 + line.length() > MAX_PAYLOAD) {
+                payloads.add(payload.toString());
+                payload.setLength(0);
+            }
+            if (!payload.isEmpty()) {
+                payload.append('\n');
+            }
+            payload.append(line);
+        }
+        if (!payload.isEmpty()) {
+            payloads.add(payload.toString());
+        }
+        return payloads;
+    }
+
+    static List<InvalidationEvent> decode(String payload) {
+        List<InvalidationEvent> events = new ArrayList<>();
+        for (String line : payload.split("\n")) {
+            String[] parts = line.split(" ");
+            try {
+                switch (parts[0]) {
+                    // без версии событие пришло от узла до появления TokenVersions: только сброс кеша
+                    case "U" -> events.add(new UserChanged(URLDecoder.decode(parts[1], StandardCharsets.UTF_8),
+                            parts.length > 2 ? Integer.parseInt(parts[2]) : 0));
+                    case "R" -> events.add(new AccessTokenRevoked(parts[1],
+                            Instant.ofEpochMilli(Long.parseLong(parts[2]))));
+                    case "S" -> events.add(new Resync());
+                    // событие из более новой версии сервиса во время выкатки
+                    default -> log.warn("Skipping unknown invalidation event: {}", line);
+                }
+            } catch (RuntimeException e) {
+                log.warn("Skipping malformed invalidation event: {}", line);
+            }
+        }
+        return events;
+    }
+
+    private static void closeQuietly(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            log.debug("Failed to close invalidation listener connection: {}", e.getMessage());
+        }
+    }
+}
@@ -10,6 +10,7 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -17,16 +18,31 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
+import ru.danilgordienko.user_auth_service.config.AuthMetrics.Outcome;
+import ru.danilgordienko.user_auth_service.config.AuthMetrics.Stage;
+import ru.danilgordienko.user_auth_service.exception.TokenNotFoundException;
+import ru.danilgordienko.user_auth_service.model.UserDetailsImpl;
+import ru.danilgordienko.user_auth_service.model.VerifiedToken;
 
 import java.io.IOException;
+import java.util.Set;
 
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class JWTAuthenticationFilter extends OncePerRequestFilter {
 
-    private final JWTService jwtService;
+    // эти эндпоинты принимают в заголовке Authorization refresh токен, а не access токен
+    private static final Set<String> REFRESH_TOKEN_PATHS = Set.of("/api/v1/auth/refresh", "/api/v1/auth/logout");
+
+    private final AccessTokenService accessTokenService;
     private final UserDetailsService userDetailsService;
+    private final AuthMetrics authMetrics;
+
+    // database - пользователь загружается из БД на каждый запрос,
+    // claims - principal строится из проверенных claims токена без обращения к БД
+    @Value("${app.security.authentication-mode:database}")
+    private AuthenticationMode authenticationMode;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request,
@@ -34,20 +50,32 @@ public class JWTAuthenticationFilter extends OncePerRequestFilter {
                                     FilterChain filterChain)
             throws ServletException, IOException {
 
+        // время самой аутентификации, без обработки запроса дальше по цепочке
+        long start = System.nanoTime();
+        boolean recorded = false;
         try {
-            log.info("JWT Authentication Filter Started");
             // Получаем JWT-токен из запроса
             String token = getTokenFromRequest(request);
 
             if (token != null && SecurityContextHolder.getContext().getAuthentication() == null ) {
-                // Извлекаем имя пользователя из токена
-                String username = jwtService.getLoginFromToken(token);
-                log.info("Получен токен для пользователя: {}", username);
+                // Разбираем токен один раз (JWT или непрозрачный) и дальше работаем с его claims
+                VerifiedToken verifiedToken = accessTokenService.verify(token);
+                String username = verifiedToken.subject();
+                log.debug("Получен токен для пользователя: {}", username);
+
+                if (accessTokenService.isRevoked(verifiedToken)) {
+                    log.warn("JWT-токен пользователя '{}' отозван", username);
+                    authMetrics.record(Stage.FILTER, Outcome.REVOKED, start);
+                    response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "JWT-токен отозван");
+                    return;
+                }
 
-                // Загружаем данные пользователя по логину
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+                // Загружаем данные пользователя по логину либо берем их из claims
+                UserDetails userDetails = authenticationMode == AuthenticationMode.CLAIMS
+                        ? UserDetailsImpl.fromToken(verifiedToken)
+                        : userDetailsService.loadUserByUsername(username);
 
-                if (!jwtService.isTokenExpired(token)) {
+                if (!verifiedToken.isExpired()) {
                     // Создаем объект аутентификации и устанавливаем его в SecurityContext
                     UsernamePasswordAuthenticationToken authentication =
                             new UsernamePasswordAuthenticationToken(
@@ -55,28 +83,56 @@ public class JWTAuthenticationFilter extends OncePerRequestFilter {
                                     null,
                                     userDetails.getAuthorities());
                     SecurityContextHolder.getContext().setAuthentication(authentication);
-                    log.info("Аутентификация пользователя '{}' успешно установлена", username);
+                    log.debug("Аутентификация пользователя '{}' успешно установлена", username);
                 }
             }
 
+        authMetrics.record(Stage.FILTER, outcome(token), start);
+        recorded = true;
         // Передаем управление следующему фильтру в цепочке
         filterChain.doFilter(request, response);
 
         } catch (ExpiredJwtException e) {
+            authMetrics.record(Stage.FILTER, e, start);
             log.warn("JWT-токен просрочен: {}", e.getMessage());
             response.sendError(HttpServletResponse.SC_FORBIDDEN, "JWT-токен просрочен");
         } catch (UnsupportedJwtException | MalformedJwtException e) {
+            authMetrics.record(Stage.FILTER, e, start);
             log.warn("Недействительный JWT-токен: {}", e.getMessage());
             response.sendError(HttpServletResponse.SC_FORBIDDEN, "Недействительный JWT-токен");
         } catch (JwtException e) {
+            authMetrics.record(Stage.FILTER, e, start);
             log.warn("Неверный JWT-токен: {}", e.getMessage());
             response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Неверный JWT-токен");
+        } catch (TokenNotFoundException e) {
+            // непрозрачный токен, которого нет в access_tokens
+            authMetrics.record(Stage.FILTER, e, start);
+            log.warn("Неизвестный access токен: {}", e.getMessage());
+            response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Неверный access токен");
         } catch (Exception e) {
+            // исключение могло прийти и из filterChain, тогда время фильтра уже записано
+            if (!recorded) {
+                authMetrics.record(Stage.FILTER, e, start);
+            }
             log.error("Ошибка аутентификации: {}", e.getMessage(), e);
             response.sendError(HttpServletResponse.SC_FORBIDDEN, "Ошибка аутентификации");
         }
     }
 
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return REFRESH_TOKEN_PATHS.contains(request.getServletPath());
+    }
+
+    private Outcome outcome(String token) {
+        if (token == null) {
+            return Outcome.ANONYMOUS;
+        }
+        return SecurityContextHolder.getContext().getAuthentication() != null
+                ? Outcome.SUCCESS
+                : Outcome.EXPIRED;
+    }
+
     private String getTokenFromRequest(HttpServletRequest request) {
         String header = request.getHeader(HttpHeaders.AUTHORIZATION);
         // Проверяем, что заголовок начинается с "Bearer " и извлекаем сам токен
@@ -1,20 +1,53 @@
 package ru.danilgordienko.user_auth_service.config;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Header;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.io.Decoders;
-import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.ProtectedHeader;
+import io.jsonwebtoken.UnsupportedJwtException;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
+import ru.danilgordienko.user_auth_service.config.AuthMetrics.Outcome;
+import ru.danilgordienko.user_auth_service.config.AuthMetrics.Stage;
+import ru.danilgordienko.user_auth_service.model.IssuedToken;
+import ru.danilgordienko.user_auth_service.model.JwksDocument;
 import ru.danilgordienko.user_auth_service.model.UserDetailsImpl;
+import ru.danilgordienko.user_auth_service.model.VerifiedToken;
 
+import java.nio.file.Path;
 import java.security.Key;
+import java.security.KeyPair;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
 
+@Slf4j
 @Service
+@RequiredArgsConstructor
 public class JWTService {
+
+    // тип токена: refresh токен подписан тем же ключом и не должен приниматься как access
+    private static final String TYPE_CLAIM = "typ";
+    private static final String ACCESS_TYPE = "access";
+    private static final String REFRESH_TYPE = "refresh";
+
+    private final AuthMetrics authMetrics;
+
     // Секретный ключ для подписи JWT
     @Value("${app.security.secret}")
     private String secret;
@@ -25,65 +58,267 @@ public class JWTService {
     @Value("${app.security.refresh-expiration}")
     private int refreshExpiration;
 
-    private Key getSigningKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(secret);
-        return Keys.hmacShaKeyFor(keyBytes);
+    // hs256 - подпись секретом выше, es256 | eddsa - закрытым ключом из PEM
+    @Value("${app.security.signing.algorithm:hs256}")
+    private SigningAlgorithm signingAlgorithm;
+    @Value("${app.security.signing.private-key:}")
+    private String privateKeyPath;
+    @Value("${app.security.signing.public-key:}")
+    private String publicKeyPath;
+    // kid в заголовке токена и в JWKS, по умолчанию thumbprint открытого ключа
+    @Value("${app.security.signing.key-id:}")
+    private String keyId;
+
+    // каталог связки ключей (см. KeyDirectory); не задан - один ключ из настроек выше
+    @Value("${app.security.signing.key-dir:}")
+    private String keyDir;
+    // через сколько после вывода из подписи ключ перестает приниматься; 0 - по наибольшему времени жизни токена
+    @Value("${app.security.signing.retire-after:0s}")
+    private Duration retireAfter;
+
+    // снимок связки ключей; подменяется целиком, проверка токена читает его без блокировок
+    private final AtomicReference<JwtKeyRing> keyRing = new AtomicReference<>();
+    // ключи из каталога при последнем чтении и когда каждый из них перестал быть активным, по kid.
+    // Меняются только под синхронизацией reloadKeys
+    private List<SigningKey> loadedKeys = List.of();
+    private String loadedActiveKeyId;
+    private String keyDirFingerprint;
+    private final Map<String, Instant> deactivatedAt = new HashMap<>();
+    // kid ключей, которые были активными, пока сервис работает: только они выводятся из обращения
+    private final Set<String> everActive = new HashSet<>();
+    // один парсер на все ключи: ключ проверки выбирается по kid из текущего снимка
+    private final JwtParser parser = Jwts.parser()
+            .keyLocator(header -> locateKey(header))
+            .build();
+
+    @PostConstruct
+    public void init() {
+        if (!keyDir.isBlank()) {
+            reloadKeys();
+            return;
+        }
+        keyRing.set(JwtKeyRing.single(configuredKey()));
+        log.info("JWT signing with {}, kid {}", signingAlgorithm, keyRing.get().active().keyId());
+    }
+
+    // ключ из app.security.secret или app.security.signing.private-key/public-key
+    private SigningKey configuredKey() {
+        if (signingAlgorithm == null || !signingAlgorithm.isAsymmetric()) {
+            return SigningKey.hmac(null, secret);
+        }
+        KeyPair keyPair = loadKeyPair();
+        return SigningKey.asymmetric(keyId, signingAlgorithm, keyPair.getPrivate(), keyPair.getPublic());
+    }
+
+    private KeyPair loadKeyPair() {
+        if (privateKeyPath.isBlank() || publicKeyPath.isBlank()) {
+            // токены не переживут перезапуск и не проверятся на других узлах
+            log.warn("app.security.signing.private-key/public-key are not set, generating an ephemeral {} key pair",
+                    signingAlgorithm);
+            return signingAlgorithm.generateKeyPair();
+        }
+        return new KeyPair(
+                PemKeys.readPublicKey(Path.of(publicKeyPath), signingAlgorithm.keyAlgorithm()),
+                PemKeys.readPrivateKey(Path.of(privateKeyPath), signingAlgorithm.keyAlgorithm()));
+    }
+
+    @Scheduled(fixedDelayString = "${app.security.signing.reload-interval:30s}",
+            initialDelayString = "${app.security.signing.reload-interval:30s}")
+    public void reloadKeys() {
+        if (!keyDir.isBlank()) {
+            reloadKeys(Instant.now());
+        }
+    }
+
+    // перечитывает каталог, если он изменился, и выводит из обращения ключи, отслужившие retireAfter.
+    // Ошибка в новых файлах не ломает работу: остается прежний снимок
+    synchronized void reloadKeys(Instant now) {
+        Path dir = Path.of(keyDir);
+        JwtKeyRing current = keyRing.get();
+        String fingerprint = KeyDirectory.fingerprint(dir);
+        boolean changed = !fingerprint.equals(keyDirFingerprint);
+        if (changed) {
+            try {
+                KeyDirectory.Contents contents = KeyDirectory.read(dir);
+                List<SigningKey> keys = new ArrayList<>(contents.keys());
+                // токены без kid, выданные до перехода на каталог ключей, принимаются, пока секрет не выведен
+                if (secret != null && !secret.isBlank()) {
+                    keys.add(SigningKey.hmac(null, secret));
+                }
+                find(keys, contents.activeKeyId());
+                loadedKeys = keys;
+                loadedActiveKeyId = contents.activeKeyId();
+                keyDirFingerprint = fingerprint;
+            } catch (RuntimeException e) {
+                if (current == null) {
+                    throw e;
+                }
+                log.error("Cannot reload signing keys from {}, keeping the current key ring: {}", dir, e.getMessage());
+                return;
+            }
+        }
+
+        SigningKey active = find(loadedKeys, loadedActiveKeyId);
+        List<SigningKey> retained = retain(loadedKeys, active, now);
+        if (!changed && current != null && current.keys().size() == retained.size()) {
+            return;
+        }
+        keyRing.set(JwtKeyRing.of(active, retained));
+        log.info("JWT key ring: active kid {}, verification kids {}", active.keyId(),
+                retained.stream().map(SigningKey::keyId).toList());
+    }
+
+    private SigningKey find(List<SigningKey> keys, String keyId) {
+        return keys.stream()
+                .filter(key -> keyId.equals(key.keyId()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Active key " + keyId + " not found in " + keyDir));
+    }
+
+    // ключ, переставший быть активным, принимается еще retireAfter - пока не истекут подписанные им токены.
+    // Момент вывода помнится, пока файл ключа лежит в каталоге, так что выведенный ключ не оживает при перечитывании.
+    // Заранее опубликованный ключ, который еще ничего не подписывал, не выводится, сколько бы ни ждал включения.
+    // Ключ из app.security.secret (без kid) подписывал токены до каталога ключей и выводится как бывший активный
+    private List<SigningKey> retain(List<SigningKey> keys, SigningKey active, Instant now) {
+        Duration grace = retireAfter.isZero()
+                ? Duration.ofMillis(Math.max(accessExpiration, refreshExpiration))
+                : retireAfter;
+        deactivatedAt.keySet().retainAll(keys.stream().map(JWTService::lookupId).toList());
+        deactivatedAt.remove(lookupId(active));
+        everActive.add(lookupId(active));
+        List<SigningKey> retained = new ArrayList<>();
+        for (SigningKey key : keys) {
+            if (key != active && (key.keyId() == null || everActive.contains(key.keyId()))) {
+                Instant since = deactivatedAt.computeIfAbsent(lookupId(key), kid -> now);
+                if (now.isAfter(since.plus(grace))) {
+                    continue;
+                }
+            }
+            retained.add(key);
+        }
+        return retained;
+    }
+
+    private static String lookupId(SigningKey key) {
+        return key.keyId() == null ? JwtKeyRing.LEGACY_KEY_ID : key.keyId();
+    }
+
+    private Key locateKey(Header header) {
+        String kid = header instanceof ProtectedHeader protectedHeader ? protectedHeader.getKeyId() : null;
+        Key key = keyRing.get().verificationKey(kid);
+        if (key == null) {
+            throw new UnsupportedJwtException("Unknown or retired signing key " + kid);
+        }
+        return key;
+    }
+
+    // открытые ключи для /.well-known/jwks.json, включая еще не активные и выводимые из обращения
+    public JwksDocument jwks() {
+        return keyRing.get().jwks();
     }
 
     // генерирует access токен
     public String generateAccessToken(UserDetails userDetails) {
-        return buildToken(userDetails,  accessExpiration);
+        return generateAccessToken(userDetails, UUID.randomUUID().toString());
     }
 
-    // генерирует refresh toker
-    public String generateRefreshToken(UserDetails userDetails) {
-        return buildToken(userDetails,  refreshExpiration);
+    // генерирует access токен с заданным jti, по нему токен отзывается до истечения
+    public String generateAccessToken(UserDetails userDetails, String tokenId) {
+        long start = System.nanoTime();
+        String token = buildToken(userDetails, new Date(System.currentTimeMillis() + accessExpiration))
+                .id(tokenId)
+                .claim(TYPE_CLAIM, ACCESS_TYPE)
+                .compact();
+        authMetrics.record(Stage.JWT_SIGN, Outcome.SUCCESS, start);
+        return token;
+    }
+
+    // генерирует refresh токен из цепочки ротации familyId,
+    // время истечения сохраняется вместе с ним в БД.
+    // accessTokenId - jti выданного вместе с ним access токена, при logout отзывается и он
+    public IssuedToken generateRefreshToken(UserDetails userDetails, UUID familyId, int generation,
+                                            String accessTokenId) {
+        long start = System.nanoTime();
+        Date expiresAt = new Date(System.currentTimeMillis() + refreshExpiration);
+        String token = buildToken(userDetails, expiresAt)
+                .claim(TYPE_CLAIM, REFRESH_TYPE)
+                .claim("fid", familyId.toString())
+                .claim("gen", generation)
+                .claim("ajti", accessTokenId)
+                .compact();
+        authMetrics.record(Stage.JWT_SIGN, Outcome.SUCCESS, start);
+        return new IssuedToken(token, expiresAt.toInstant(), familyId, generation);
     }
 
      // Генерирует JWT-токен для аутентифицированного пользователя
-    private String buildToken(UserDetails userDetails, int expiration) {
+    private JwtBuilder buildToken(UserDetails userDetails, Date expiresAt) {
         UserDetailsImpl user = (UserDetailsImpl) userDetails;
+        SigningKey key = keyRing.get().active();
 
+        // алгоритм выбирается по типу ключа: HS256/384/512, ES256 для P-256, EdDSA для Ed25519
         return Jwts.builder()
-                .setSubject(user.getUsername()) // login
-                .setIssuedAt(new Date())
-                .setExpiration(new Date(System.currentTimeMillis() + expiration))
+                .header().keyId(key.keyId()).and()
+                .subject(user.getUsername()) // login
+                .issuedAt(new Date())
+                .expiration(expiresAt)
                 .claim("id", user.getId())
                 .claim("email", user.getEmail())
+                .claim("ver", user.getTokenVersion())
                 .claim("roles", user.getAuthorities().stream()
                         .map(Object::toString)
                         .toList())
-                .signWith(getSigningKey())
-                .compact();
-    }
-
-
-    // проверка просрочен ли токен
-    public boolean isTokenExpired(String token) {
-        return getExpirationFromToken(token).before(new Date());
+                .signWith(key.signingKey());
     }
 
-    // получение ролей из токена
-    public List<String> getRolesFromToken(String token) {
-        Claims claims = getClaimsFromToken(token);
-        return claims.get("roles", List.class);
+    // разбирает токен и проверяет подпись один раз за запрос
+    @SuppressWarnings("unchecked")
+    public VerifiedToken verify(String token) {
+        long start = System.nanoTime();
+        Claims claims;
+        try {
+            claims = getClaimsFromToken(token);
+        } catch (RuntimeException e) {
+            authMetrics.record(Stage.JWT_VERIFY, e, start);
+            throw e;
+        }
+        authMetrics.record(Stage.JWT_VERIFY, Outcome.SUCCESS, start);
+        String familyId = claims.get("fid", String.class);
+        Integer generation = claims.get("gen", Integer.class);
+        Integer tokenVersion = claims.get("ver", Integer.class);
+        return new VerifiedToken(
+                claims.getSubject(),
+                claims.get("id", Long.class),
+                claims.get("email", String.class),
+                claims.get("roles", List.class),
+                claims.getExpiration().toInstant(),
+                familyId != null ? UUID.fromString(familyId) : null,
+                generation != null ? generation : 0,
+                claims.getId(),
+                claims.get("ajti", String.class),
+                tokenVersion != null ? tokenVersion : 0,
+                isRefreshToken(claims));
     }
 
-    // получение времени просрочки токена
-    private Date getExpirationFromToken(String token) {
-        return getClaimsFromToken(token).getExpiration();
+    // Тип из claim typ. У refresh токенов, выданных до его появления, есть fid, а у самых старых
+    // нет ни fid, ни jti - они отличаются от access токена только сроком жизни.
+    // Секунда запаса - на округление iat и exp до секунд
+    private boolean isRefreshToken(Claims claims) {
+        String type = claims.get(TYPE_CLAIM, String.class);
+        if (type != null) {
+            return REFRESH_TYPE.equals(type);
+        }
+        if (claims.get("fid") != null) {
+            return true;
+        }
+        Date issuedAt = claims.getIssuedAt();
+        Date expiration = claims.getExpiration();
+        return issuedAt != null && expiration != null
+                && expiration.getTime() - issuedAt.getTime() > accessExpiration + 1000L;
     }
 
     private Claims getClaimsFromToken(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-    }
-
-    // Извлекает логин из переданного JWT-токена
-    public String getLoginFromToken(String token) {
-        return getClaimsFromToken(token).getSubject();
+        return parser
+                .parseSignedClaims(token)
+                .getPayload();
     }
 }
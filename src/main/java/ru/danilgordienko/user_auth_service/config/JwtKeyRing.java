@@ -0,0 +1,61 @@
+package ru.danilgordienko.user_auth_service.config;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ru.danilgordienko.user_auth_service.model.JwksDocument;
+
+import java.security.Key;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Неизменяемый снимок связки ключей: активный ключ подписи и все ключи проверки по kid.
+// Подменяется целиком через AtomicReference, поэтому проверка токена берет ключ без блокировок.
+// JWK Set с открытыми ключами сериализуется один раз на снимок
+record JwtKeyRing(SigningKey active, Map<String, SigningKey> keys, JwksDocument jwks) {
+
+    // kid для токенов без заголовка kid - подписанных секретом app.security.secret
+    static final String LEGACY_KEY_ID = "";
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    static JwtKeyRing of(SigningKey active, Collection<SigningKey> keys) {
+        if (!active.canSign()) {
+            throw new IllegalStateException("Active key " + active.keyId() + " has no private key");
+        }
+        Map<String, SigningKey> byKid = keys.stream()
+                .collect(Collectors.toUnmodifiableMap(JwtKeyRing::lookupId, Function.identity()));
+        return new JwtKeyRing(active, byKid, jwks(keys));
+    }
+
+    static JwtKeyRing single(SigningKey key) {
+        return of(key, List.of(key));
+    }
+
+    // null - ключа с таким kid нет или он выведен из обращения
+    Key verificationKey(String keyId) {
+        SigningKey key = keys.get(keyId == null ? LEGACY_KEY_ID : keyId);
+        return key == null ? null : key.verificationKey();
+    }
+
+    private static String lookupId(SigningKey key) {
+        return key.keyId() == null ? LEGACY_KEY_ID : key.keyId();
+    }
+
+    private static JwksDocument jwks(Collection<SigningKey> keys) {
+        try {
+            String json = JSON.writeValueAsString(Map.of("keys", keys.stream()
+                    .map(SigningKey::jwk)
+                    .filter(Objects::nonNull)
+                    .toList()));
+            String etag = "\"" + HexFormat.of().formatHex(TokenDigest.sha256(json), 0, 16) + "\"";
+            return new JwksDocument(json, etag);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize JWK Set", e);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package ru.danilgordienko.user_auth_service.config;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Каталог связки ключей:
+//   <kid>.key - HMAC-секрет в base64, им можно и подписывать, и проверять
+//   <kid>.pem - открытый ключ EC P-256 или Ed25519 (BEGIN PUBLIC KEY) и, если ключ подписывающий,
+//               закрытый (BEGIN PRIVATE KEY); только открытый - ключ лишь для проверки
+//   active    - kid ключа, которым подписываются новые токены; без него берется наибольший kid
+// Файлы, начинающиеся с точки, пропускаются (служебные ссылки смонтированного Kubernetes secret)
+final class KeyDirectory {
+
+    static final String ACTIVE_FILE = "active";
+
+    record Contents(List<SigningKey> keys, String activeKeyId) {
+    }
+
+    private KeyDirectory() {
+    }
+
+    // имена, размеры и время изменения файлов: если не изменились, каталог не перечитывается
+    static String fingerprint(Path dir) {
+        StringBuilder fingerprint = new StringBuilder();
+        for (Path file : files(dir)) {
+            try {
+                fingerprint.append(file.getFileName()).append(':')
+                        .append(Files.size(file)).append(':')
+                        .append(Files.getLastModifiedTime(file).toMillis()).append(';');
+            } catch (IOException e) {
+                // файл удалили между листингом и чтением атрибутов - следующий опрос увидит изменение
+                fingerprint.append(file.getFileName()).append(":gone;");
+            }
+        }
+        return fingerprint.toString();
+    }
+
+    static Contents read(Path dir) {
+        List<SigningKey> keys = new ArrayList<>();
+        String activeKeyId = null;
+        for (Path file : files(dir)) {
+            String name = file.getFileName().toString();
+            if (name.equals(ACTIVE_FILE)) {
+                activeKeyId = PemKeys.read(file).strip();
+            } else if (name.endsWith(".key")) {
+                keys.add(SigningKey.hmac(kid(name, ".key"), PemKeys.read(file)));
+            } else if (name.endsWith(".pem")) {
+                keys.add(asymmetric(kid(name, ".pem"), file));
+            }
+        }
+        if (activeKeyId == null) {
+            activeKeyId = keys.stream()
+                    .filter(SigningKey::canSign)
+                    .map(SigningKey::keyId)
+                    .max(Comparator.naturalOrder())
+                    .orElseThrow(() -> new IllegalStateException("No signing key in " + dir));
+        }
+        return new Contents(keys, activeKeyId);
+    }
+
+    private static SigningKey asymmetric(String kid, Path file) {
+        String pem = PemKeys.read(file);
+        byte[] publicDer = PemKeys.block(pem, PemKeys.PUBLIC_KEY)
+                .orElseThrow(() -> new IllegalStateException("No PUBLIC KEY block in " + file));
+        SigningAlgorithm algorithm = SigningAlgorithm.ofPublicKey(publicDer, file);
+        PublicKey publicKey = PemKeys.publicKey(publicDer, algorithm.keyAlgorithm(), file);
+        PrivateKey privateKey = PemKeys.block(pem, PemKeys.PRIVATE_KEY)
+                .map(der -> PemKeys.privateKey(der, algorithm.keyAlgorithm(), file))
+                .orElse(null);
+        return SigningKey.asymmetric(kid, algorithm, privateKey, publicKey);
+    }
+
+    private static String kid(String fileName, String extension) {
+        return fileName.substring(0, fileName.length() - extension.length());
+    }
+
+    private static List<Path> files(Path dir) {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files
+                    .filter(file -> !file.getFileName().toString().startsWith("."))
+                    .filter(Files::isRegularFile)
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot list key directory " + dir, e);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package ru.danilgordienko.user_auth_service.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.danilgordienko.user_auth_service.config.AuthMetrics.Outcome;
+import ru.danilgordienko.user_auth_service.config.AuthMetrics.Stage;
+import ru.danilgordienko.user_auth_service.exception.TokenNotFoundException;
+import ru.danilgordienko.user_auth_service.model.AccessToken;
+import ru.danilgordienko.user_auth_service.model.UserDetailsImpl;
+import ru.danilgordienko.user_auth_service.model.VerifiedToken;
+import ru.danilgordienko.user_auth_service.repository.AccessTokenRepository;
+import ru.danilgordienko.user_auth_service.repository.UserRepository;
+
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+
+// Непрозрачные access токены: 32 случайных байта в base64url с префиксом, около 46 символов
+// вместо сотен у JWT. В БД лежит SHA-256 токена и снимок пользователя, при проверке строка
+// ищется через локальный кеш, ограниченный по числу записей.
+// Кеш наполняется при выдаче токена, так что обычно проверка не доходит до БД.
+// Неизвестные токены тоже кешируются на negative-ttl, чтобы перебор случайных строк не шел в БД
+@Slf4j
+@Service
+public class OpaqueTokenService {
+
+    static final String PREFIX = "at_";
+    private static final int TOKEN_BYTES = 32;
+
+    private final AccessTokenRepository accessTokenRepository;
+    private final UserRepository userRepository;
+    private final AuthMetrics authMetrics;
+    private final SecureRandom random = new SecureRandom();
+    // ключ - SHA-256 токена в ByteBuffer (equals по содержимому), сам токен в памяти не хранится
+    private final Cache<ByteBuffer, Optional<VerifiedToken>> cache;
+
+    @Value("${app.security.access-expiration}")
+    private int accessExpiration;
+
+    @Value("${app.security.opaque-token.purge-batch-size:500}")
+    private int purgeBatchSize;
+
+    public OpaqueTokenService(AccessTokenRepository accessTokenRepository,
+                              UserRepository userRepository,
+                              AuthMetrics authMetrics,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.security.opaque-token.cache.max-size:100000}") long maxSize,
+                              @Value("${app.security.opaque-token.cache.ttl:1m}") Duration ttl,
+                              @Value("${app.security.opaque-token.cache.negative-ttl:10s}") Duration negativeTtl) {
+        this.accessTokenRepository = accessTokenRepository;
+        this.userRepository = userRepository;
+        this.authMetrics = authMetrics;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new IntrospectionExpiry(ttl, negativeTtl))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "accessTokens");
+    }
+
+    public static boolean isOpaque(String token) {
+        return token.startsWith(PREFIX);
+    }
+
+    // выдает токен с jti tokenId, сохраняет его в БД и сразу кладет в кеш
+    public String issue(UserDetailsImpl user, String tokenId) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = PREFIX + Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        byte[] tokenHash = TokenDigest.sha256(token);
+        List<String> roles = user.getAuthorities().stream()
+                .map(Object::toString)
+                .toList();
+        Instant expiresAt = Instant.now().plusMillis(accessExpiration);
+
+        accessTokenRepository.save(AccessToken.builder()
+                .tokenHash(tokenHash)
+                .tokenId(tokenId)
+                .user(userRepository.getReferenceById(user.getId()))
+                .login(user.getUsername())
+                .email(user.getEmail())
+                .roles(String.join(",", roles))
+                .tokenVersion(user.getTokenVersion())
+                .expiresAt(expiresAt)
+                .build());
+        cache.put(ByteBuffer.wrap(tokenHash),
+                Optional.of(new VerifiedToken(user.getUsername(), user.getId(), user.getEmail(), roles,
+                        expiresAt, null, 0, tokenId, null, user.getTokenVersion(), false)));
+        return token;
+    }
+
+    // данные токена из кеша, при промахе - из БД. Просроченный токен возвращается как есть,
+    // решение о нем принимает вызывающий, как и для JWT
+    public VerifiedToken introspect(String token) {
+        long start = System.nanoTime();
+        ByteBuffer key = ByteBuffer.wrap(TokenDigest.sha256(token));
+        Optional<VerifiedToken> verified = cache.getIfPresent(key);
+        if (verified == null) {
+            // загрузка идет вне блокировок кеша: параллельный промах по тому же токену
+            // сделает лишний SELECT, зато JDBC-запрос не держит бакет ConcurrentHashMap
+            verified = accessTokenRepository.findByTokenHash(key.array()).map(OpaqueTokenService::toVerifiedToken);
+            cache.put(key, verified);
+        }
+        if (verified.isEmpty()) {
+            authMetrics.record(Stage.TOKEN_INTROSPECT, Outcome.NOT_FOUND, start);
+            throw new TokenNotFoundException("Unknown access token");
+        }
+        authMetrics.record(Stage.TOKEN_INTROSPECT,
+                verified.get().isExpired() ? Outcome.EXPIRED : Outcome.SUCCESS, start);
+        return verified.get();
+    }
+
+    @Scheduled(fixedDelayString = "${app.security.opaque-token.purge-interval:10m}",
+            initialDelayString = "${app.security.opaque-token.purge-interval:10m}")
+    public void purgeExpired() {
+        Instant now = Instant.now();
+        int purged = 0;
+        int deleted;
+        do {
+            deleted = accessTokenRepository.deleteExpired(now, purgeBatchSize);
+            purged += deleted;
+        } while (deleted == purgeBatchSize);
+        if (purged > 0) {
+            log.info("Deleted {} expired opaque access tokens", purged);
+        }
+    }
+
+    private static VerifiedToken toVerifiedToken(AccessToken accessToken) {
+        return new VerifiedToken(
+                accessToken.getLogin(),
+                accessToken.getUser().getId(),
+                accessToken.getEmail(),
+                Arrays.asList(accessToken.getRoles().split(",")),
+                accessToken.getExpiresAt(),
+                null,
+                0,
+                accessToken.getTokenId(),
+                null,
+                accessToken.getTokenVersion(),
+                false);
+    }
+
+    // запись живет не дольше ttl (предел устаревания после удаления строки на другом узле)
+    // и не дольше самого токена
+    private record IntrospectionExpiry(Duration ttl, Duration negativeTtl)
+            implements Expiry<ByteBuffer, Optional<VerifiedToken>> {
+
+        @Override
+        public long expireAfterCreate(ByteBuffer key, Optional<VerifiedToken> value, long currentTime) {
+            if (value.isEmpty()) {
+                return negativeTtl.toNanos();
+            }
+            long untilExpiry = Duration.between(Instant.now(), value.get().expiresAt()).toNanos();
+            return Math.max(0, Math.min(ttl.toNanos(), untilExpiry));
+        }
+
+        @Override
+        public long expireAfterUpdate(ByteBuffer key, Optional<VerifiedToken> value, long currentTime,
+                                      long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(ByteBuffer key, Optional<VerifiedToken> value, long currentTime,
+                                    long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
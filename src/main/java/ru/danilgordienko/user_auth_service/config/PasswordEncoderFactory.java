@@ -0,0 +1,96 @@
+package ru.danilgordienko.user_auth_service.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+
+// Собирает DelegatingPasswordEncoder с настраиваемым алгоритмом и стоимостью хеширования.
+// Хеши хранятся с префиксом {bcrypt}/{argon2}, поэтому смена алгоритма или стоимости
+// не ломает старые пароли: они пересчитываются при следующем успешном логине
+@Slf4j
+@Component
+public class PasswordEncoderFactory {
+
+    private static final int MAX_BCRYPT_STRENGTH = 16;
+    private static final int MAX_ARGON2_ITERATIONS = 10;
+    private static final int CALIBRATION_RUNS = 3;
+    private static final String CALIBRATION_PASSWORD = "calibration-password";
+
+    // bcrypt | argon2 - алгоритм для новых хешей
+    @Value("${app.security.password.algorithm:bcrypt}")
+    private String algorithm;
+
+    @Value("${app.security.password.bcrypt.strength:10}")
+    private int bcryptStrength;
+
+    // память в КБ
+    @Value("${app.security.password.argon2.memory:16384}")
+    private int argon2Memory;
+
+    @Value("${app.security.password.argon2.iterations:2}")
+    private int argon2Iterations;
+
+    @Value("${app.security.password.argon2.parallelism:1}")
+    private int argon2Parallelism;
+
+    // целевое время одного хеширования, 0 - калибровка выключена и берутся настройки выше
+    @Value("${app.security.password.target-hash-time:0ms}")
+    private Duration targetHashTime;
+
+    public PasswordEncoder create() {
+        if (!targetHashTime.isZero()) {
+            calibrate();
+        }
+        Map<String, PasswordEncoder> encoders = Map.of(
+                "bcrypt", new BCryptPasswordEncoder(bcryptStrength),
+                "argon2", argon2(argon2Iterations));
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder(algorithm, encoders);
+        // хеши без префикса, сохраненные до перехода на DelegatingPasswordEncoder
+        encoder.setDefaultPasswordEncoderForMatches(new BCryptPasswordEncoder());
+        log.info("Password encoder: {}, bcrypt strength {}, argon2 memory {} KB / iterations {} / parallelism {}",
+                algorithm, bcryptStrength, argon2Memory, argon2Iterations, argon2Parallelism);
+        return encoder;
+    }
+
+    // подбирает максимальную стоимость, при которой хеширование на текущем железе укладывается в target.
+    // Настроенная стоимость - нижняя граница: на медленном железе калибровка ее не снижает
+    private void calibrate() {
+        if ("argon2".equals(algorithm)) {
+            int iterations = argon2Iterations;
+            while (iterations < MAX_ARGON2_ITERATIONS && measure(argon2(iterations + 1)) <= targetHashTime.toNanos()) {
+                iterations++;
+            }
+            argon2Iterations = iterations;
+        } else {
+            int strength = bcryptStrength;
+            while (strength < MAX_BCRYPT_STRENGTH
+                    && measure(new BCryptPasswordEncoder(strength + 1)) <= targetHashTime.toNanos()) {
+                strength++;
+            }
+            bcryptStrength = strength;
+        }
+        log.info("Password hashing calibrated for target {} ms", targetHashTime.toMillis());
+    }
+
+    // лучшее время из нескольких прогонов, чтобы не учитывать прогрев
+    private long measure(PasswordEncoder encoder) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < CALIBRATION_RUNS; i++) {
+            long start = System.nanoTime();
+            encoder.encode(CALIBRATION_PASSWORD);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private Argon2PasswordEncoder argon2(int iterations) {
+        return new Argon2PasswordEncoder(16, 32, argon2Parallelism, argon2Memory, iterations);
+    }
+}
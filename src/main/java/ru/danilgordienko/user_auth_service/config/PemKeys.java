@@ -0,0 +1,75 @@
+package ru.danilgordienko.user_auth_service.config;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+import java.util.Optional;
+
+// Чтение ключей из PEM: закрытый в PKCS#8 (BEGIN PRIVATE KEY), открытый в X.509 (BEGIN PUBLIC KEY),
+// как их выдает openssl genpkey / openssl pkey -pubout. Оба блока могут лежать в одном файле
+final class PemKeys {
+
+    static final String PRIVATE_KEY = "PRIVATE KEY";
+    static final String PUBLIC_KEY = "PUBLIC KEY";
+
+    private PemKeys() {
+    }
+
+    static PrivateKey readPrivateKey(Path path, String keyAlgorithm) {
+        return privateKey(block(read(path), PRIVATE_KEY).orElseThrow(() -> noBlock(path, PRIVATE_KEY)),
+                keyAlgorithm, path);
+    }
+
+    static PublicKey readPublicKey(Path path, String keyAlgorithm) {
+        return publicKey(block(read(path), PUBLIC_KEY).orElseThrow(() -> noBlock(path, PUBLIC_KEY)),
+                keyAlgorithm, path);
+    }
+
+    static PrivateKey privateKey(byte[] der, String keyAlgorithm, Path source) {
+        try {
+            return KeyFactory.getInstance(keyAlgorithm).generatePrivate(new PKCS8EncodedKeySpec(der));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Invalid " + keyAlgorithm + " private key in " + source, e);
+        }
+    }
+
+    static PublicKey publicKey(byte[] der, String keyAlgorithm, Path source) {
+        try {
+            return KeyFactory.getInstance(keyAlgorithm).generatePublic(new X509EncodedKeySpec(der));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Invalid " + keyAlgorithm + " public key in " + source, e);
+        }
+    }
+
+    static String read(Path path) {
+        try {
+            return Files.readString(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read key file " + path, e);
+        }
+    }
+
+    // содержимое блока BEGIN/END type, если он есть
+    static Optional<byte[]> block(String pem, String type) {
+        String begin = "-----BEGIN " + type + "-----";
+        String end = "-----END " + type + "-----";
+        int from = pem.indexOf(begin);
+        int to = pem.indexOf(end);
+        if (from < 0 || to < from) {
+            return Optional.empty();
+        }
+        return Optional.of(Base64.getMimeDecoder().decode(pem.substring(from + begin.length(), to)));
+    }
+
+    private static IllegalStateException noBlock(Path path, String type) {
+        return new IllegalStateException("No " + type + " block in " + path);
+    }
+}
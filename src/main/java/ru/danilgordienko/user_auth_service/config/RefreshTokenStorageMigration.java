@@ -0,0 +1,88 @@
+package ru.danilgordienko.user_auth_service.config;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+// Перевод refresh_tokens со столбца token (полный JWT) на token_hash (SHA-256), фаза expand.
+// Выполняется при старте после обновления схемы Hibernate, повторный запуск ничего не делает.
+// Столбец token остается, но становится необязательным. Пока узлы двух версий работают вместе:
+// - новые узлы дублируют токен в token, чтобы старые находили их строки (write-legacy-column);
+// - строку старого узла новый узел находит по token, если поиск по хешу промахнулся (claimLegacyToken).
+// Когда старых узлов не осталось, write-legacy-column выключают и старт очищает token.
+// Удаление token, not null на token_hash и этого класса - фаза contract, в следующем релизе
+@Slf4j
+@Component
+@DependsOn("entityManagerFactory")
+@RequiredArgsConstructor
+public class RefreshTokenStorageMigration {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${app.security.refresh-token.write-legacy-column:true}")
+    private boolean writeLegacyColumn;
+
+    // столбец token есть только в базах, обновленных с прошлой версии
+    private volatile boolean legacyColumn;
+
+    @PostConstruct
+    public void migrate() {
+        legacyColumn = columnExists("token");
+        if (!legacyColumn) {
+            return;
+        }
+        // строки с одним token_hash пишут новые узлы, пока дублирование выключено
+        if (!isNullable("token")) {
+            jdbcTemplate.execute("alter table refresh_tokens alter column token drop not null");
+        }
+        // хеш считается той же функцией, что и TokenDigest: sha256 от UTF-8 байтов токена
+        int migrated = jdbcTemplate.update(
+                "update refresh_tokens set token_hash = sha256(convert_to(token, 'UTF8')) " +
+                        "where token_hash is null and token is not null");
+        if (migrated > 0) {
+            log.info("Migrated {} refresh tokens to hashed storage", migrated);
+        }
+        if (!writeLegacyColumn) {
+            int cleared = jdbcTemplate.update(
+                    "update refresh_tokens set token = null where token is not null and token_hash is not null");
+            if (cleared > 0) {
+                log.info("Cleared {} plaintext refresh tokens", cleared);
+            }
+        }
+    }
+
+    // дублирует только что сохраненный токен в token для узлов прошлой версии
+    public void writeLegacyToken(byte[] tokenHash, String token) {
+        if (legacyColumn && writeLegacyColumn) {
+            jdbcTemplate.update("update refresh_tokens set token = ? where token_hash = ?", token, tokenHash);
+        }
+    }
+
+    // дозаполняет token_hash строки, записанной узлом прошлой версии после старта этого узла.
+    // Вызывается только при промахе поиска по хешу, true - строка найдена и теперь ищется по хешу
+    public boolean claimLegacyToken(byte[] tokenHash, String token) {
+        return legacyColumn && jdbcTemplate.update(
+                "update refresh_tokens set token_hash = ? where token = ? and token_hash is null",
+                tokenHash, token) > 0;
+    }
+
+    private boolean columnExists(String column) {
+        Integer count = jdbcTemplate.queryForObject(
+                "select count(*) from information_schema.columns " +
+                        "where lower(table_name) = 'refresh_tokens' and lower(column_name) = ?",
+                Integer.class, column);
+        return count != null && count > 0;
+    }
+
+    private boolean isNullable(String column) {
+        Integer count = jdbcTemplate.queryForObject(
+                "select count(*) from information_schema.columns " +
+                        "where lower(table_name) = 'refresh_tokens' and lower(column_name) = ? and is_nullable = 'YES'",
+                Integer.class, column);
+        return count != null && count > 0;
+    }
+}
@@ -10,7 +10,6 @@ import org.springframework.security.config.annotation.method.configuration.Enabl
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
@@ -24,6 +23,9 @@ import static org.springframework.security.config.http.SessionCreationPolicy.STA
 public class SecurityConfig {
 
     private final JWTAuthenticationFilter jwtAuthenticationFilter;
+    private final PasswordEncoderFactory passwordEncoderFactory;
+    private final PasswordHashingExecutor passwordHashingExecutor;
+    private final AuthMetrics authMetrics;
 
     @Bean
     public AuthenticationManager authenticationManager(AuthenticationConfiguration authenticationConfiguration) throws Exception {
@@ -34,8 +36,14 @@ public class SecurityConfig {
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         return http.csrf(AbstractHttpConfigurer::disable)
                 .authorizeHttpRequests(auth -> auth
-                        .requestMatchers("/api/v1/auth/add/**").authenticated()
+                        .requestMatchers("/api/v1/auth/add/**", "/api/v1/auth/introspect", "/api/v1/auth/logout/all",
+                                "/api/v1/auth/bulk/**").authenticated()
                         .requestMatchers("/api/v1/auth/**").permitAll()
+                        .requestMatchers("/.well-known/jwks.json").permitAll()
+                        // пробы открыты; метрики раскрывают нагрузку и долю отказов, их собирает только
+                        // Prometheus с токеном сервисного аккаунта. Остальные endpoints actuator не открываются наружу
+                        .requestMatchers("/actuator/health/**").permitAll()
+                        .requestMatchers("/actuator/prometheus").hasAnyRole("ADMIN", "SERVICE")
                         .anyRequest().authenticated()
                 )
                 .exceptionHandling(exception -> exception
@@ -57,6 +65,6 @@ public class SecurityConfig {
 
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        return new BoundedPasswordEncoder(passwordEncoderFactory.create(), passwordHashingExecutor, authMetrics);
     }
 }
\ No newline at end of file
@@ -0,0 +1,72 @@
+package ru.danilgordienko.user_auth_service.config;
+
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.X509EncodedKeySpec;
+
+// Алгоритм подписи токенов.
+// hs256 - общий секрет, проверить токен может только тот, кто знает секрет;
+// es256 (ECDSA P-256) и eddsa (Ed25519) - асимметричные, открытый ключ публикуется в /.well-known/jwks.json
+public enum SigningAlgorithm {
+    HS256("HS256", null),
+    ES256("ES256", "EC"),
+    EDDSA("EdDSA", "Ed25519");
+
+    // имя алгоритма в заголовке alg и в JWK
+    private final String jwsName;
+    // алгоритм KeyFactory для разбора PEM, null для HMAC
+    private final String keyAlgorithm;
+
+    SigningAlgorithm(String jwsName, String keyAlgorithm) {
+        this.jwsName = jwsName;
+        this.keyAlgorithm = keyAlgorithm;
+    }
+
+    String jwsName() {
+        return jwsName;
+    }
+
+    public boolean isAsymmetric() {
+        return keyAlgorithm != null;
+    }
+
+    String keyAlgorithm() {
+        return keyAlgorithm;
+    }
+
+    // алгоритм по открытому ключу в X.509: P-256 - ES256, Ed25519 - EdDSA
+    static SigningAlgorithm ofPublicKey(byte[] der, Path source) {
+        for (SigningAlgorithm algorithm : new SigningAlgorithm[]{ES256, EDDSA}) {
+            try {
+                PublicKey key = KeyFactory.getInstance(algorithm.keyAlgorithm)
+                        .generatePublic(new X509EncodedKeySpec(der));
+                if (key instanceof ECPublicKey ec && ec.getParams().getCurve().getField().getFieldSize() != 256) {
+                    throw new IllegalStateException("Only P-256 EC keys are supported: " + source);
+                }
+                return algorithm;
+            } catch (GeneralSecurityException e) {
+                // не этот тип ключа
+            }
+        }
+        throw new IllegalStateException("Unsupported public key in " + source + ", expected EC P-256 or Ed25519");
+    }
+
+    // новая пара ключей, когда файлы ключей не заданы
+    KeyPair generateKeyPair() {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance(keyAlgorithm);
+            if (this == ES256) {
+                generator.initialize(new ECGenParameterSpec("secp256r1"));
+            }
+            return generator.generateKeyPair();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot generate " + this + " key pair", e);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package ru.danilgordienko.user_auth_service.config;
+
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Jwks;
+import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.PublicJwk;
+
+import javax.crypto.SecretKey;
+import java.security.Key;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+
+// Один ключ из связки: kid, ключ проверки и, если им можно подписывать, ключ подписи.
+// jwk - открытая часть для JWKS, у HMAC-ключей ее нет
+record SigningKey(String keyId, SigningAlgorithm algorithm, Key signingKey, Key verificationKey, PublicJwk<?> jwk) {
+
+    boolean canSign() {
+        return signingKey != null;
+    }
+
+    static SigningKey hmac(String keyId, String base64Secret) {
+        SecretKey key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(base64Secret.strip()));
+        return new SigningKey(keyId, SigningAlgorithm.HS256, key, key, null);
+    }
+
+    // privateKey == null - ключ только для проверки (новый, еще не включенный, или выведенный из подписи)
+    // keyId не задан - берется RFC 7638 thumbprint открытого ключа, он не меняется между перезапусками
+    static SigningKey asymmetric(String keyId, SigningAlgorithm algorithm, PrivateKey privateKey, PublicKey publicKey) {
+        var builder = Jwks.builder()
+                .key(publicKey)
+                .algorithm(algorithm.jwsName())
+                .publicKeyUse("sig");
+        PublicJwk<?> jwk = keyId == null || keyId.isBlank()
+                ? builder.idFromThumbprint().build()
+                : builder.id(keyId).build();
+        return new SigningKey(jwk.getId(), algorithm, privateKey, publicKey, jwk);
+    }
+}
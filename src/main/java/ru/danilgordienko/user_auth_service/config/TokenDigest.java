@@ -0,0 +1,44 @@
+package ru.danilgordienko.user_auth_service.config;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+// SHA-256 от строки токена: в БД хранится и ищется 32-байтовый хеш вместо самого JWT
+public final class TokenDigest {
+
+    private static final MessageDigest PROTOTYPE = newDigest();
+
+    private TokenDigest() {
+    }
+
+    public static byte[] sha256(String token) {
+        return cloneDigest().digest(token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // безопасное для логов представление токена: начало его SHA-256, сам токен в лог не попадает
+    public static String redact(String token) {
+        if (token == null) {
+            return "null";
+        }
+        return "sha256:" + HexFormat.of().formatHex(sha256(token), 0, 6);
+    }
+
+    // MessageDigest не потокобезопасен, поэтому на каждый вызов берется копия прототипа
+    private static MessageDigest cloneDigest() {
+        try {
+            return (MessageDigest) PROTOTYPE.clone();
+        } catch (CloneNotSupportedException e) {
+            return newDigest();
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package ru.danilgordienko.user_auth_service.config;
+
+import ru.danilgordienko.user_auth_service.model.VerifiedToken;
+
+// Дополнительная проверка access токена после проверки подписи.
+// Все бины этого типа вызываются JWTAuthenticationFilter на каждый запрос,
+// поэтому реализации не должны ходить в БД
+public interface TokenRevocationCheck {
+
+    boolean isRevoked(VerifiedToken token);
+}
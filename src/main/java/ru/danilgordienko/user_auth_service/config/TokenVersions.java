@@ -0,0 +1,131 @@
+package ru.danilgordienko.user_auth_service.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.danilgordienko.user_auth_service.exception.UserNotFoundException;
+import ru.danilgordienko.user_auth_service.model.InvalidationEvent.Resync;
+import ru.danilgordienko.user_auth_service.model.InvalidationEvent.UserChanged;
+import ru.danilgordienko.user_auth_service.model.VerifiedToken;
+import ru.danilgordienko.user_auth_service.repository.UserRepository;
+import ru.danilgordienko.user_auth_service.repository.UserRepository.TokenVersionView;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Версии токенов пользователей: login -> users.token_version, проверяется JWTAuthenticationFilter на каждый запрос.
+// Access токен несет версию на момент выдачи (claim ver) и отклоняется, если версия пользователя с тех пор выросла,
+// так что смена ролей и выход со всех устройств отзывают все его токены одной записью, без jti каждого.
+// В памяти только версии, выросшие за последние access-expiration: токены, выданные до более старой смены,
+// уже истекли. Версия только растет, поэтому события с разных узлов и догрузка из БД сливаются
+// по максимуму в любом порядке
+@Slf4j
+@Component
+public class TokenVersions implements TokenRevocationCheck {
+
+    // запас на расхождение часов узлов и долгие транзакции, как в AccessTokenDenylist
+    private static final Duration SYNC_OVERLAP = Duration.ofMinutes(1);
+
+    private final UserRepository userRepository;
+    private final Map<String, Entry> versions = new ConcurrentHashMap<>();
+    private volatile Instant lastSync = Instant.EPOCH;
+
+    @Value("${app.security.access-expiration}")
+    private int accessExpiration;
+
+    public TokenVersions(UserRepository userRepository, MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        meterRegistry.gaugeMapSize("auth.token_versions", Tags.empty(), versions);
+    }
+
+    @PostConstruct
+    public void load() {
+        sync();
+        log.info("Loaded token versions of {} users", versions.size());
+    }
+
+    @Override
+    public boolean isRevoked(VerifiedToken token) {
+        Entry current = versions.get(token.subject());
+        return current != null && token.tokenVersion() < current.version();
+    }
+
+    // увеличивает версию пользователя в текущей транзакции и возвращает новую.
+    // В памяти она меняется после коммита: при откате уже выданные токены не должны отклоняться
+    public int bump(String login) {
+        if (userRepository.incrementTokenVersion(login, Instant.now()) == 0) {
+            throw new UserNotFoundException("User " + login + " not found");
+        }
+        int version = userRepository.findTokenVersionByLogin(login).orElseThrow();
+        advanceAfterCommit(login, version);
+        return version;
+    }
+
+    // версия, записанная в БД в текущей транзакции (в том числе пакетно), применяется в памяти после коммита
+    public void advanceAfterCommit(String login, int version) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    advance(login, version, Instant.now());
+                }
+            });
+        } else {
+            advance(login, version, Instant.now());
+        }
+    }
+
+    // версия выросла на другом узле (или на этом же - событие приходит и отправителю)
+    @EventListener
+    public void onUserChanged(UserChanged event) {
+        advance(event.login(), event.tokenVersion(), Instant.now());
+    }
+
+    // уведомления могли быть пропущены: перечитываются все смены за последние access-expiration
+    @EventListener
+    public void onResync(Resync event) {
+        lastSync = Instant.EPOCH;
+        sync();
+    }
+
+    // страховка на случай, если InvalidationBus выключен или уведомление потерялось.
+    // Догружаются только смены с прошлой синхронизации, заодно из памяти уходят устаревшие записи
+    @Scheduled(fixedDelayString = "${app.security.token-version.sync-interval:5m}",
+            initialDelayString = "${app.security.token-version.sync-interval:5m}")
+    public void sync() {
+        Instant now = Instant.now();
+        Instant oldest = now.minusMillis(accessExpiration);
+        Instant since = lastSync.equals(Instant.EPOCH) ? oldest : lastSync.minus(SYNC_OVERLAP);
+        for (TokenVersionView view : userRepository.findTokenVersionsChangedSince(since)) {
+            advance(view.getLogin(), view.getTokenVersion(), view.getChangedAt());
+        }
+        versions.values().removeIf(entry -> entry.changedAt().isBefore(oldest));
+        lastSync = now;
+    }
+
+    private void advance(String login, int version, Instant changedAt) {
+        if (version > 0) {
+            versions.merge(login, new Entry(version, changedAt), Entry::max);
+        }
+    }
+
+    // версия и время ее смены: запись нужна, пока не истекли токены, выданные до этой смены
+    private record Entry(int version, Instant changedAt) {
+
+        Entry max(Entry other) {
+            if (version != other.version) {
+                return version > other.version ? this : other;
+            }
+            return changedAt.isAfter(other.changedAt) ? this : other;
+        }
+    }
+}
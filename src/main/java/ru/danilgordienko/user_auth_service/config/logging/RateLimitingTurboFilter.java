@@ -0,0 +1,76 @@
+package ru.danilgordienko.user_auth_service.config.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Ограничивает число записей в секунду от логгеров горячего пути (фильтр аутентификации и т.п.).
+// Записи сверх лимита отбрасываются до форматирования, ERROR проходят всегда.
+// Лимит считается отдельно для каждого префикса: поток WARN о плохих токенах не глушит записи троттлинга логинов.
+// Настраивается в logback-spring.xml: <logger> - префикс имени логгера, <maxPerSecond> - лимит на префикс
+public class RateLimitingTurboFilter extends TurboFilter {
+
+    private static final int COUNT_BITS = 24;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+    private final List<Window> windows = new ArrayList<>();
+    private int maxPerSecond = 10;
+
+    public void addLogger(String logger) {
+        windows.add(new Window(logger, new AtomicLong()));
+    }
+
+    public void setMaxPerSecond(int maxPerSecond) {
+        this.maxPerSecond = maxPerSecond;
+    }
+
+    // isEnabledFor здесь нельзя: он сам вызывает turbo-фильтры
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (!isStarted() || level == null || level.isGreaterOrEqual(Level.ERROR)
+                || !level.isGreaterOrEqual(logger.getEffectiveLevel())) {
+            return FilterReply.NEUTRAL;
+        }
+        AtomicLong window = find(logger.getName());
+        if (window == null) {
+            return FilterReply.NEUTRAL;
+        }
+        return tryAcquire(window, System.currentTimeMillis() / 1000) ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+
+    private AtomicLong find(String name) {
+        for (Window window : windows) {
+            if (name.startsWith(window.prefix())) {
+                return window.state();
+            }
+        }
+        return null;
+    }
+
+    private boolean tryAcquire(AtomicLong window, long second) {
+        while (true) {
+            long current = window.get();
+            long next;
+            if (current >>> COUNT_BITS != second) {
+                next = (second << COUNT_BITS) | 1;
+            } else if ((current & COUNT_MASK) >= maxPerSecond) {
+                return false;
+            } else {
+                next = current + 1;
+            }
+            if (window.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    // state: старшие биты - номер секунды, младшие - число записей в этой секунде
+    private record Window(String prefix, AtomicLong state) {
+    }
+}
@@ -10,11 +10,14 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import ru.danilgordienko.user_auth_service.dto.AuthResponse;
+import ru.danilgordienko.user_auth_service.dto.IntrospectionResponse;
 import ru.danilgordienko.user_auth_service.dto.LoginRequest;
 import ru.danilgordienko.user_auth_service.dto.RegisterRequest;
 import ru.danilgordienko.user_auth_service.service.AuthService;
 
 import java.io.IOException;
+import java.security.Principal;
+
 @RestController
 @RequiredArgsConstructor
 @RequestMapping("api/v1/auth")
@@ -25,32 +28,47 @@ public class AuthController {
 
     @PostMapping("/register")
     public ResponseEntity<AuthResponse> register(@RequestBody @Valid RegisterRequest registerRequest) {
-        log.info("Received registration request for login: {}", registerRequest.getLogin());
+        log.debug("Received registration request for login: {}", registerRequest.getLogin());
         var response = authService.register(registerRequest);
-        log.info("Registration successful for login: {}", registerRequest.getLogin());
+        log.debug("Registration successful for login: {}", registerRequest.getLogin());
         return ResponseEntity.ok(response);
     }
 
     @PostMapping("/login")
-    public ResponseEntity<AuthResponse> login(@RequestBody @Valid LoginRequest loginRequest) {
-        log.info("Received login request for login: {}", loginRequest.getLogin());
-        var response = authService.login(loginRequest);
-        log.info("Login successful for login: {}", loginRequest.getLogin());
+    public ResponseEntity<AuthResponse> login(@RequestBody @Valid LoginRequest loginRequest,
+                                              HttpServletRequest request) {
+        log.debug("Received login request for login: {}", loginRequest.getLogin());
+        var response = authService.login(loginRequest, request.getRemoteAddr());
+        log.debug("Login successful for login: {}", loginRequest.getLogin());
         return ResponseEntity.ok(response);
     }
 
     @PostMapping("/refresh")
     public void refresh(HttpServletRequest request, HttpServletResponse response) throws IOException {
-        log.info("Received token refresh request");
+        log.debug("Received token refresh request");
         authService.refresh(request, response);
     }
 
     @PostMapping("/logout")
     public void logout(HttpServletRequest request) {
-        log.info("Received logout request");
+        log.debug("Received logout request");
         authService.logout(request);
     }
 
+    // выход со всех устройств владельца access токена, которым подписан запрос
+    @PostMapping("/logout/all")
+    public void logoutAll(Principal principal) {
+        log.debug("Received logout from all sessions request");
+        authService.logoutAll(principal.getName());
+    }
+
+    // вызывающий - сервис или администратор со своим токеном, проверяемый токен передается параметром
+    @PreAuthorize("hasAnyRole('ADMIN', 'SERVICE')")
+    @PostMapping("/introspect")
+    public ResponseEntity<IntrospectionResponse> introspect(@RequestParam String token) {
+        return ResponseEntity.ok(authService.introspect(token));
+    }
+
     @PreAuthorize("hasRole('ADMIN')")
     @PostMapping("/add/admin/{login}")
     public ResponseEntity<String> assignAdminRole(@PathVariable String login) {
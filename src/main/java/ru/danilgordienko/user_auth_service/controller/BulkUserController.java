@@ -0,0 +1,44 @@
+package ru.danilgordienko.user_auth_service.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.danilgordienko.user_auth_service.dto.BulkFormat;
+import ru.danilgordienko.user_auth_service.dto.BulkResult;
+import ru.danilgordienko.user_auth_service.service.BulkUserService;
+
+import java.io.IOException;
+
+// Массовые операции администратора. Тело (application/x-ndjson или text/csv) не буферизуется,
+// а читается из потока запроса по мере обработки
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("api/v1/auth/bulk")
+@Slf4j
+public class BulkUserController {
+
+    private final BulkUserService bulkUserService;
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/roles/{role}")
+    public ResponseEntity<BulkResult> grantRole(@PathVariable String role, HttpServletRequest request)
+            throws IOException {
+        log.debug("Received bulk grant of role {}", role);
+        return ResponseEntity.ok(bulkUserService.grantRole(role, BulkFormat.of(request.getContentType()),
+                request.getInputStream()));
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/users")
+    public ResponseEntity<BulkResult> importUsers(HttpServletRequest request) throws IOException {
+        log.debug("Received bulk user import");
+        return ResponseEntity.ok(bulkUserService.importUsers(BulkFormat.of(request.getContentType()),
+                request.getInputStream()));
+    }
+}
@@ -0,0 +1,39 @@
+package ru.danilgordienko.user_auth_service.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import ru.danilgordienko.user_auth_service.config.JWTService;
+import ru.danilgordienko.user_auth_service.model.JwksDocument;
+
+import java.time.Duration;
+
+// Открытые ключи подписи для сервисов, которые проверяют токены сами.
+// Документ сериализуется один раз при смене ключей; клиенты кешируют его на max-age
+// и перезапрашивают с If-None-Match, получая 304 без тела, пока ключи не сменились
+@RestController
+@RequiredArgsConstructor
+public class JwksController {
+
+    private final JWTService jwtService;
+
+    @Value("${app.security.jwks.max-age:5m}")
+    private Duration maxAge;
+
+    @GetMapping(value = "/.well-known/jwks.json", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<String> jwks(WebRequest request) {
+        JwksDocument jwks = jwtService.jwks();
+        if (request.checkNotModified(jwks.etag())) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(jwks.etag())
+                .cacheControl(CacheControl.maxAge(maxAge).cachePublic())
+                .body(jwks.json());
+    }
+}
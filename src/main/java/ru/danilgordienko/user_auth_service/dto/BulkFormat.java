@@ -0,0 +1,33 @@
+package ru.danilgordienko.user_auth_service.dto;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+// формат тела bulk-запроса, определяется по Content-Type
+public enum BulkFormat {
+    NDJSON(MediaType.parseMediaType("application/x-ndjson")),
+    CSV(MediaType.parseMediaType("text/csv"));
+
+    private final MediaType mediaType;
+
+    BulkFormat(MediaType mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public static BulkFormat of(String contentType) {
+        if (contentType != null) {
+            try {
+                MediaType requested = MediaType.parseMediaType(contentType);
+                for (BulkFormat format : values()) {
+                    if (format.mediaType.includes(requested)) {
+                        return format;
+                    }
+                }
+            } catch (InvalidMediaTypeException e) {
+                // ответ ниже
+            }
+        }
+        throw new IllegalStateException("Unsupported content type " + contentType
+                + ", expected application/x-ndjson or text/csv");
+    }
+}
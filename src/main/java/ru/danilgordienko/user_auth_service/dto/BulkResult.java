@@ -0,0 +1,14 @@
+package ru.danilgordienko.user_auth_service.dto;
+
+import java.util.List;
+
+// Итог bulk-операции: succeeded - записано, skipped - уже было (роль у пользователя есть, повтор логина
+// в пачке), failed - отклонено. Ошибок возвращается не больше app.bulk.max-errors, остальные только считаются
+public record BulkResult(
+        long processed,
+        long succeeded,
+        long skipped,
+        long failed,
+        List<BulkRowError> errors,
+        boolean errorsTruncated) {
+}
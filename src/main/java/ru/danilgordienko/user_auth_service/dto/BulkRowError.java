@@ -0,0 +1,5 @@
+package ru.danilgordienko.user_auth_service.dto;
+
+// ошибка в строке line тела запроса (нумерация с 1, включая заголовок CSV)
+public record BulkRowError(long line, String login, String message) {
+}
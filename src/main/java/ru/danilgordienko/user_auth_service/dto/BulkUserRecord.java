@@ -0,0 +1,23 @@
+package ru.danilgordienko.user_auth_service.dto;
+
+import jakarta.validation.constraints.Email;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+// Строка bulk-запроса. Для выдачи роли нужен только login, для импорта - login, email
+// и password либо готовый passwordHash ({bcrypt}/{argon2} или bcrypt без префикса).
+// roles пустой - пользователь получает GUEST, как при регистрации
+public record BulkUserRecord(
+        @NotBlank(message = "login must not be blank")
+        @Size(max = 255, message = "login must be at most 255 characters")
+        String login,
+        @NotBlank(message = "email must not be blank")
+        @Email(message = "email is invalid")
+        @Size(max = 255, message = "email must be at most 255 characters")
+        String email,
+        String password,
+        String passwordHash,
+        List<String> roles) {
+}
@@ -0,0 +1,20 @@
+package ru.danilgordienko.user_auth_service.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+// Ответ /introspect в духе RFC 7662: для недействительного токена только active=false
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record IntrospectionResponse(
+        boolean active,
+        String sub,
+        Long user_id,
+        String email,
+        List<String> roles,
+        Long exp) {
+
+    public static IntrospectionResponse inactive() {
+        return new IntrospectionResponse(false, null, null, null, null, null);
+    }
+}
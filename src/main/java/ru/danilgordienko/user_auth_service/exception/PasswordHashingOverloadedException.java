@@ -0,0 +1,7 @@
+package ru.danilgordienko.user_auth_service.exception;
+
+public class PasswordHashingOverloadedException extends RuntimeException {
+    public PasswordHashingOverloadedException(String message) {
+        super(message);
+    }
+}
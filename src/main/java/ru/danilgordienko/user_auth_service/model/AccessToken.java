@@ -0,0 +1,54 @@
+package ru.danilgordienko.user_auth_service.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.time.Instant;
+
+// Непрозрачный access токен. Хранится SHA-256 от токена и снимок данных пользователя на момент выдачи,
+// чтобы проверка обходилась одним чтением строки без join с users и user_roles
+@Entity
+@Table(name = "access_tokens",
+        indexes = @Index(name = "idx_access_tokens_expires_at", columnList = "expires_at"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AccessToken {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "token_hash", nullable = false, unique = true, length = 32)
+    private byte[] tokenHash;
+
+    // jti для отзыва через AccessTokenDenylist, как у JWT
+    @Column(name = "token_id", length = 36)
+    private String tokenId;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @Column(nullable = false)
+    private String login;
+
+    private String email;
+
+    // authorities через запятую, как в claim roles у JWT: ROLE_GUEST,ROLE_ADMIN
+    @Column(nullable = false, length = 1024)
+    private String roles;
+
+    // версия токенов пользователя при выдаче, как claim ver у JWT
+    @ColumnDefault("0")
+    @Column(name = "token_version", nullable = false)
+    private int tokenVersion;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+}
@@ -0,0 +1,39 @@
+package ru.danilgordienko.user_auth_service.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+// Событие аудита аутентификации. Сущность описывает схему auth_events,
+// а пишутся события пачками через AuthEventBatchRepository
+@Entity
+@Table(name = "auth_events",
+        indexes = @Index(name = "idx_auth_events_login_created_at", columnList = "login, created_at"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AuthEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    private AuthEventType type;
+
+    private String login;
+
+    @Column(name = "client_ip", length = 45)
+    private String clientIp;
+
+    private String detail;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+}
@@ -0,0 +1,5 @@
+package ru.danilgordienko.user_auth_service.model;
+
+public enum AuthEventType {
+    LOGIN_SUCCESS, LOGIN_FAILURE, LOGIN_THROTTLED, REGISTER, REFRESH, REFRESH_REUSE_DETECTED, LOGOUT, ROLE_GRANTED
+}
@@ -0,0 +1,21 @@
+package ru.danilgordienko.user_auth_service.model;
+
+import java.time.Instant;
+
+// Изменение, после которого состояние в памяти других узлов устарело.
+// Рассылается InvalidationBus и публикуется на каждом узле как событие Spring
+public sealed interface InvalidationEvent {
+
+    // изменились данные пользователя (роли) или он вышел со всех устройств: запись в кеше UserDetails устарела,
+    // access токены с версией меньше tokenVersion больше не принимаются
+    record UserChanged(String login, int tokenVersion) implements InvalidationEvent {
+    }
+
+    // access токен отозван до истечения
+    record AccessTokenRevoked(String tokenId, Instant expiresAt) implements InvalidationEvent {
+    }
+
+    // уведомления могли потеряться (переподключение к БД): все состояние перечитывается заново
+    record Resync() implements InvalidationEvent {
+    }
+}
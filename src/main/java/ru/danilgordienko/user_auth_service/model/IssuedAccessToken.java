@@ -0,0 +1,5 @@
+package ru.danilgordienko.user_auth_service.model;
+
+// Только что выпущенный access токен и его jti, по которому токен можно отозвать
+public record IssuedAccessToken(String value, String tokenId) {
+}
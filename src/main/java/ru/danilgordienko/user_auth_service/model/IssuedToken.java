@@ -0,0 +1,8 @@
+package ru.danilgordienko.user_auth_service.model;
+
+import java.time.Instant;
+import java.util.UUID;
+
+// Только что выпущенный refresh токен: значение, время истечения и место в цепочке ротации
+public record IssuedToken(String value, Instant expiresAt, UUID familyId, int generation) {
+}
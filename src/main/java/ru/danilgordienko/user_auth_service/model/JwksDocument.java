@@ -0,0 +1,5 @@
+package ru.danilgordienko.user_auth_service.model;
+
+// JWK Set открытых ключей, сериализованный один раз при смене ключей, и его ETag
+public record JwksDocument(String json, String etag) {
+}
@@ -6,11 +6,17 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.Builder;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.time.Instant;
+import java.util.UUID;
 
 @Entity
-@Table(name = "refresh_tokens")
+@Table(name = "refresh_tokens",
+        indexes = {
+                @Index(name = "idx_refresh_tokens_user_id", columnList = "user_id"),
+                @Index(name = "idx_refresh_tokens_family_id", columnList = "family_id")
+        })
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -21,8 +27,11 @@ public class RefreshToken {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @Column(nullable = false, unique = true)
-    private String token;
+    // SHA-256 от refresh токена, сам JWT в БД не хранится.
+    // Пока идет раскатка, строки узлов прошлой версии приходят без хеша (см. RefreshTokenStorageMigration),
+    // NOT NULL появится в contract-релизе вместе с удалением столбца token
+    @Column(name = "token_hash", unique = true, length = 32)
+    private byte[] tokenHash;
 
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
     @JoinColumn(name = "user_id", nullable = false)
@@ -30,4 +39,17 @@ public class RefreshToken {
 
     @Column(nullable = false)
     private boolean revoked = false;
+
+    // у строк, перенесенных со старой схемы, время истечения неизвестно
+    @Column(name = "expires_at")
+    private Instant expiresAt;
+
+    // цепочка ротации: все токены, выданные от одного логина через /refresh
+    @Column(name = "family_id")
+    private UUID familyId;
+
+    // номер токена в цепочке, 0 - выданный при логине
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private int generation;
 }
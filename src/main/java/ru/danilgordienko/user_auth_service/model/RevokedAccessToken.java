@@ -0,0 +1,35 @@
+package ru.danilgordienko.user_auth_service.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+// Отозванный до истечения access токен. Строка нужна до expiresAt - потом токен отклоняется и так,
+// по ней восстанавливается список отзыва в памяти при старте и подхватываются отзывы с других узлов
+@Entity
+@Table(name = "revoked_access_tokens",
+        indexes = {
+                @Index(name = "idx_revoked_access_tokens_expires_at", columnList = "expires_at"),
+                @Index(name = "idx_revoked_access_tokens_revoked_at", columnList = "revoked_at")
+        })
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RevokedAccessToken {
+
+    // jti токена
+    @Id
+    @Column(name = "token_id", length = 36)
+    private String tokenId;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    @Column(name = "revoked_at", nullable = false)
+    private Instant revokedAt;
+}
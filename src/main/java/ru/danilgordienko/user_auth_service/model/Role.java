@@ -1,5 +1,7 @@
 package ru.danilgordienko.user_auth_service.model;
 
 public enum Role {
-    ADMIN, GUEST, PREMIUM_USER
+    ADMIN, GUEST, PREMIUM_USER,
+    // учетная запись другого сервиса, которому разрешен /introspect
+    SERVICE
 }
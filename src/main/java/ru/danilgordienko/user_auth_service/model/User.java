@@ -9,13 +9,17 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 
+import java.time.Instant;
 import java.util.HashSet;
 import java.util.Set;
 
 @Entity
 @Data
-@Table(name = "users")
+// индекс по времени смены версии - для догрузки недавних смен в TokenVersions
+@Table(name = "users", indexes = @Index(name = "idx_users_token_version_changed_at",
+        columnList = "token_version_changed_at"))
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
@@ -38,7 +42,19 @@ public class User {
     String email;
 
     @ElementCollection(fetch = FetchType.EAGER)
-    @CollectionTable(name = "user_roles", joinColumns = @JoinColumn(name = "user_id"))
+    // индекс нужен и для загрузки ролей пользователя, и для ON CONFLICT при пакетной выдаче ролей
+    @CollectionTable(name = "user_roles", joinColumns = @JoinColumn(name = "user_id"),
+            indexes = @Index(name = "uk_user_roles_user_id_role", columnList = "user_id, role", unique = true))
     @Column(name = "role")
     private Set<String> roles = new HashSet<>();
+
+    // увеличивается при смене ролей и выходе со всех устройств,
+    // access токены с меньшим claim ver после этого отклоняются (TokenVersions)
+    @ColumnDefault("0")
+    @Column(name = "token_version", nullable = false)
+    private int tokenVersion;
+
+    // время последнего увеличения token_version
+    @Column(name = "token_version_changed_at")
+    private Instant tokenVersionChangedAt;
 }
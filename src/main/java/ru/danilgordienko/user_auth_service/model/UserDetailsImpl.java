@@ -19,7 +19,15 @@ public class UserDetailsImpl implements UserDetails {
     private String password;
     private String email;
     private Set<String> roles;
+    // версия токенов пользователя на момент загрузки, попадает в claim ver
+    private int tokenVersion;
 
+    private static final String ROLE_PREFIX = "ROLE_";
+
+
+    public UserDetailsImpl(Long id, String login, String password, String email, Set<String> roles) {
+        this(id, login, password, email, roles, 0);
+    }
 
     public static UserDetailsImpl build(User user) {
         return new UserDetailsImpl(
@@ -27,13 +35,29 @@ public class UserDetailsImpl implements UserDetails {
                 user.getLogin(),
                 user.getPassword(),
                 user.getEmail(),
-                user.getRoles());
+                Set.copyOf(user.getRoles()),
+                user.getTokenVersion());
+    }
+
+    // principal из проверенного access токена, без обращения к БД.
+    // В claim roles лежат authorities вида ROLE_ADMIN, поэтому префикс снимается
+    public static UserDetailsImpl fromToken(VerifiedToken token) {
+        Set<String> roles = token.roles().stream()
+                .map(role -> role.startsWith(ROLE_PREFIX) ? role.substring(ROLE_PREFIX.length()) : role)
+                .collect(Collectors.toSet());
+        return new UserDetailsImpl(
+                token.id(),
+                token.subject(),
+                null,
+                token.email(),
+                roles,
+                token.tokenVersion());
     }
 
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
         return roles.stream().map(role ->
-                new SimpleGrantedAuthority("ROLE_" + role)).collect(Collectors.toSet());
+                new SimpleGrantedAuthority(ROLE_PREFIX + role)).collect(Collectors.toSet());
     }
 
 //    @Override
@@ -0,0 +1,29 @@
+package ru.danilgordienko.user_auth_service.model;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+// Результат однократного разбора и проверки подписи JWT.
+// Создается JWTService и передается дальше вместо повторного парсинга строки токена.
+// familyId, generation и accessTokenId (jti access токена, выданного в паре) заполнены только у refresh токенов,
+// tokenId (jti) - у токенов, выданных после появления отзыва access токенов.
+// tokenVersion - версия токенов пользователя при выдаче, у токенов без claim ver равна 0.
+// refreshToken - токен выдан как refresh (claim typ, у старых токенов - по fid или сроку жизни)
+public record VerifiedToken(
+        String subject,
+        Long id,
+        String email,
+        List<String> roles,
+        Instant expiresAt,
+        UUID familyId,
+        int generation,
+        String tokenId,
+        String accessTokenId,
+        int tokenVersion,
+        boolean refreshToken) {
+
+    public boolean isExpired() {
+        return expiresAt.isBefore(Instant.now());
+    }
+}
@@ -0,0 +1,23 @@
+package ru.danilgordienko.user_auth_service.repository;
+
+import jakarta.transaction.Transactional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import ru.danilgordienko.user_auth_service.model.AccessToken;
+
+import java.time.Instant;
+import java.util.Optional;
+
+@Repository
+public interface AccessTokenRepository extends JpaRepository<AccessToken, Long> {
+    Optional<AccessToken> findByTokenHash(byte[] tokenHash);
+
+    // удаляет до limit просроченных токенов одним DELETE, вызывается пачками до нуля
+    @Transactional
+    @Modifying
+    @Query(value = "delete from access_tokens where id in (" +
+            "select id from access_tokens where expires_at < :now order by id limit :limit)", nativeQuery = true)
+    int deleteExpired(Instant now, int limit);
+}
@@ -0,0 +1,30 @@
+package ru.danilgordienko.user_auth_service.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.danilgordienko.user_auth_service.model.AuthEvent;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+// Запись событий аудита одним JDBC batch insert, минуя persistence context
+@Repository
+@RequiredArgsConstructor
+public class AuthEventBatchRepository {
+
+    private static final String INSERT_SQL =
+            "insert into auth_events (type, login, client_ip, detail, created_at) values (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void insertAll(List<AuthEvent> events) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, events, events.size(), (ps, event) -> {
+            ps.setString(1, event.getType().name());
+            ps.setString(2, event.getLogin());
+            ps.setString(3, event.getClientIp());
+            ps.setString(4, event.getDetail());
+            ps.setTimestamp(5, Timestamp.from(event.getCreatedAt()));
+        });
+    }
+}
@@ -1,15 +1,55 @@
 package ru.danilgordienko.user_auth_service.repository;
 
+import jakarta.transaction.Transactional;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import ru.danilgordienko.user_auth_service.model.RefreshToken;
 import ru.danilgordienko.user_auth_service.model.User;
 
-import java.util.Optional;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
 
 @Repository
 public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
-    Optional<RefreshToken> findByToken(String token);
+    boolean existsByTokenHash(byte[] tokenHash);
 
-    void deleteAllByUser(User user);
+    // атомарно отзывает действующий токен, 0 строк - токена нет или он уже отозван
+    @Transactional
+    @Modifying
+    @Query("update RefreshToken t set t.revoked = true where t.tokenHash = :tokenHash and t.revoked = false")
+    int revokeByTokenHash(byte[] tokenHash);
+
+    // отзывает все действующие токены цепочки ротации
+    @Transactional
+    @Modifying
+    @Query("update RefreshToken t set t.revoked = true where t.familyId = :familyId and t.revoked = false")
+    int revokeFamily(UUID familyId);
+
+    // удаляет все токены пользователя одним DELETE, без загрузки сущностей
+    @Transactional
+    @Modifying
+    @Query("delete from RefreshToken t where t.user = :user")
+    int deleteAllByUser(User user);
+
+    // оставляет пользователю только keep самых новых действующих токенов, одним DELETE
+    @Transactional
+    @Modifying
+    @Query(value = "delete from refresh_tokens where user_id = :userId and id not in (" +
+            "select id from refresh_tokens where user_id = :userId and revoked = false " +
+            "order by id desc limit :keep)", nativeQuery = true)
+    int deleteAllExceptNewest(long userId, int keep);
+
+    // id отозванных или просроченных токенов после afterId, keyset-пагинация по первичному ключу
+    @Query(value = "select id from refresh_tokens " +
+            "where id > :afterId and (revoked = true or expires_at < :now) " +
+            "order by id limit :limit", nativeQuery = true)
+    List<Long> findPurgeableIds(long afterId, Instant now, int limit);
+
+    @Transactional
+    @Modifying
+    @Query("delete from RefreshToken t where t.id in :ids")
+    int deleteAllByIdIn(List<Long> ids);
 }
@@ -0,0 +1,30 @@
+package ru.danilgordienko.user_auth_service.repository;
+
+import jakarta.transaction.Transactional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import ru.danilgordienko.user_auth_service.model.RevokedAccessToken;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface RevokedAccessTokenRepository extends JpaRepository<RevokedAccessToken, String> {
+
+    // еще действующие отзывы, отозванные не раньше since
+    List<RevokedAccessToken> findAllByRevokedAtGreaterThanEqualAndExpiresAtAfter(Instant since, Instant now);
+
+    // save() с заданным id сначала делает SELECT (merge), здесь - один INSERT; повторный отзыв ничего не меняет
+    @Transactional
+    @Modifying
+    @Query(value = "insert into revoked_access_tokens (token_id, expires_at, revoked_at) " +
+            "values (:tokenId, :expiresAt, :revokedAt) on conflict do nothing", nativeQuery = true)
+    int insert(String tokenId, Instant expiresAt, Instant revokedAt);
+
+    @Transactional
+    @Modifying
+    @Query("delete from RevokedAccessToken t where t.expiresAt < :now")
+    int deleteExpired(Instant now);
+}
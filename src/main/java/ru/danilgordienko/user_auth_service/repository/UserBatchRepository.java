@@ -0,0 +1,91 @@
+package ru.danilgordienko.user_auth_service.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Пакетная запись пользователей и ролей для bulk-операций: один JDBC batch на пачку вместо findByLogin
+// и save() с перезаписью коллекции ролей на каждого пользователя, без persistence context.
+// Вставки пропускают уже существующие строки через ON CONFLICT DO NOTHING по уникальным login
+// и (user_id, role), так что параллельные запросы не создают дублей.
+// Результат - число вставленных строк по каждому элементу пачки: 0 - строка уже была
+@Repository
+@RequiredArgsConstructor
+public class UserBatchRepository {
+
+    private static final String INSERT_USER_SQL = "insert into users (login, email, password, token_version) "
+            + "values (?, ?, ?, 0) on conflict do nothing";
+    private static final String INSERT_ROLE_SQL = "insert into user_roles (user_id, role) "
+            + "values (?, ?) on conflict do nothing";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    public int[] insertUsers(List<NewUser> users) {
+        if (users.isEmpty()) {
+            return new int[0];
+        }
+        return jdbcTemplate.batchUpdate(INSERT_USER_SQL, users, users.size(), (ps, user) -> {
+            ps.setString(1, user.login());
+            ps.setString(2, user.email());
+            ps.setString(3, user.passwordHash());
+        })[0];
+    }
+
+    public int[] insertRoles(List<RoleGrant> grants) {
+        if (grants.isEmpty()) {
+            return new int[0];
+        }
+        return jdbcTemplate.batchUpdate(INSERT_ROLE_SQL, grants, grants.size(), (ps, grant) -> {
+            ps.setLong(1, grant.userId());
+            ps.setString(2, grant.role());
+        })[0];
+    }
+
+    // login -> id для существующих логинов из списка
+    public Map<String, Long> findIdsByLogin(Collection<String> logins) {
+        Map<String, Long> ids = new HashMap<>();
+        if (logins.isEmpty()) {
+            return ids;
+        }
+        namedParameterJdbcTemplate.query("select id, login from users where login in (:logins)",
+                Map.of("logins", logins),
+                rs -> {
+                    ids.put(rs.getString("login"), rs.getLong("id"));
+                });
+        return ids;
+    }
+
+    // одним UPDATE на пачку, как UserRepository.incrementTokenVersion для одного пользователя
+    public void incrementTokenVersions(Collection<Long> userIds, Instant changedAt) {
+        namedParameterJdbcTemplate.update("update users set token_version = token_version + 1, " +
+                        "token_version_changed_at = :changedAt where id in (:ids)",
+                Map.of("ids", userIds, "changedAt", Timestamp.from(changedAt)));
+    }
+
+    // login -> token_version
+    public Map<String, Integer> findTokenVersions(Collection<Long> userIds) {
+        Map<String, Integer> versions = new HashMap<>();
+        namedParameterJdbcTemplate.query("select login, token_version from users where id in (:ids)",
+                Map.of("ids", userIds),
+                rs -> {
+                    versions.put(rs.getString("login"), rs.getInt("token_version"));
+                });
+        return versions;
+    }
+
+    // пароль уже захеширован
+    public record NewUser(String login, String email, String passwordHash) {
+    }
+
+    public record RoleGrant(long userId, String role) {
+    }
+}
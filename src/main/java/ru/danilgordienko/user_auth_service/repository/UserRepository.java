@@ -1,9 +1,14 @@
 package ru.danilgordienko.user_auth_service.repository;
 
+import jakarta.transaction.Transactional;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import ru.danilgordienko.user_auth_service.model.User;
 
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -11,4 +16,32 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByLogin(String login);
 
     boolean existsByLogin(String defaultAdminLogin);
+
+    @Transactional
+    @Modifying
+    @Query("update User u set u.password = :password where u.login = :login")
+    int updatePassword(String login, String password);
+
+    // атомарный инкремент: параллельные смены ролей не теряют ни одного увеличения версии
+    @Transactional
+    @Modifying
+    @Query("update User u set u.tokenVersion = u.tokenVersion + 1, u.tokenVersionChangedAt = :changedAt " +
+            "where u.login = :login")
+    int incrementTokenVersion(String login, Instant changedAt);
+
+    @Query("select u.tokenVersion from User u where u.login = :login")
+    Optional<Integer> findTokenVersionByLogin(String login);
+
+    // версии, измененные начиная с since; старые смены уже не влияют на действующие access токены
+    @Query("select u.login as login, u.tokenVersion as tokenVersion, u.tokenVersionChangedAt as changedAt " +
+            "from User u where u.tokenVersionChangedAt >= :since")
+    List<TokenVersionView> findTokenVersionsChangedSince(Instant since);
+
+    interface TokenVersionView {
+        String getLogin();
+
+        int getTokenVersion();
+
+        Instant getChangedAt();
+    }
 }
@@ -4,6 +4,7 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import ru.danilgordienko.user_auth_service.dto.AuthResponse;
+import ru.danilgordienko.user_auth_service.dto.IntrospectionResponse;
 import ru.danilgordienko.user_auth_service.dto.LoginRequest;
 import ru.danilgordienko.user_auth_service.dto.RegisterRequest;
 
@@ -11,10 +12,12 @@ import java.io.IOException;
 
 public interface AuthService {
 
-    public AuthResponse login(LoginRequest loginRequest);
+    public AuthResponse login(LoginRequest loginRequest, String clientIp);
     public AuthResponse register(RegisterRequest registerRequest);
     public void refresh(HttpServletRequest request, HttpServletResponse response) throws IOException;
     public void logout(HttpServletRequest request);
+    public void logoutAll(String login);
+    public IntrospectionResponse introspect(String token);
     public void addAdminRole(String login);
     public void assignPremiumRole(String login);
 }
@@ -0,0 +1,13 @@
+package ru.danilgordienko.user_auth_service.service;
+
+import ru.danilgordienko.user_auth_service.dto.BulkFormat;
+import ru.danilgordienko.user_auth_service.dto.BulkResult;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public interface BulkUserService {
+
+    public BulkResult grantRole(String role, BulkFormat format, InputStream body) throws IOException;
+    public BulkResult importUsers(BulkFormat format, InputStream body) throws IOException;
+}
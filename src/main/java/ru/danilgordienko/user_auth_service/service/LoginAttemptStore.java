@@ -0,0 +1,16 @@
+package ru.danilgordienko.user_auth_service.service;
+
+// Хранилище счетчиков неудачных попыток входа в скользящем окне.
+// Ключ - логин или IP клиента. Сейчас счетчики живут в памяти процесса,
+// реализация на общем хранилище позволит считать попытки по всем репликам
+public interface LoginAttemptStore {
+
+    // резервирует попытку: счетчик увеличивается сразу, до проверки пароля.
+    // Возвращает число попыток за последнее окно с учетом зарезервированной
+    int acquire(String key);
+
+    // возвращает зарезервированную попытку, которая не должна считаться неудачной
+    void release(String key);
+
+    void reset(String key);
+}
@@ -0,0 +1,117 @@
+package ru.danilgordienko.user_auth_service.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.danilgordienko.user_auth_service.model.AuthEvent;
+import ru.danilgordienko.user_auth_service.model.AuthEventType;
+import ru.danilgordienko.user_auth_service.repository.AuthEventBatchRepository;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Асинхронный аудит аутентификации. Поток запроса только кладет событие в неблокирующую
+// очередь с ограничением размера, фоновая задача пишет накопленное пачками в auth_events.
+// При переполнении очереди событие отбрасывается (drop-newest) либо вытесняет самое старое (drop-oldest)
+@Slf4j
+@Component
+public class AuthEventPublisher {
+
+    public enum OverflowPolicy {
+        DROP_NEWEST, DROP_OLDEST
+    }
+
+    private final ConcurrentLinkedQueue<AuthEvent> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AuthEventBatchRepository authEventBatchRepository;
+    private final Counter dropped;
+    private final Counter written;
+    private final Counter failed;
+
+    @Value("${app.audit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.audit.queue-capacity:10000}")
+    private int capacity;
+
+    @Value("${app.audit.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.audit.overflow-policy:drop-newest}")
+    private OverflowPolicy overflowPolicy;
+
+    public AuthEventPublisher(AuthEventBatchRepository authEventBatchRepository, MeterRegistry meterRegistry) {
+        this.authEventBatchRepository = authEventBatchRepository;
+        Gauge.builder("auth.audit.queue", size, AtomicInteger::get)
+                .description("Audit events waiting to be written")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("auth.audit.dropped")
+                .description("Audit events dropped because the queue was full")
+                .register(meterRegistry);
+        this.written = Counter.builder("auth.audit.written")
+                .description("Audit events written to auth_events")
+                .register(meterRegistry);
+        this.failed = Counter.builder("auth.audit.failed")
+                .description("Audit events lost because the batch insert failed")
+                .register(meterRegistry);
+    }
+
+    public void publish(AuthEventType type, String login) {
+        publish(type, login, null, null);
+    }
+
+    public void publish(AuthEventType type, String login, String clientIp, String detail) {
+        if (!enabled) {
+            return;
+        }
+        if (size.incrementAndGet() > capacity) {
+            if (overflowPolicy == OverflowPolicy.DROP_NEWEST || queue.poll() == null) {
+                size.decrementAndGet();
+                dropped.increment();
+                return;
+            }
+            // старое событие вытеснено новым, размер очереди не изменился
+            size.decrementAndGet();
+            dropped.increment();
+        }
+        queue.offer(new AuthEvent(null, type, login, clientIp, detail, Instant.now()));
+    }
+
+    @Scheduled(fixedDelayString = "${app.audit.flush-interval:1s}")
+    public void flush() {
+        List<AuthEvent> batch = new ArrayList<>(batchSize);
+        while (true) {
+            AuthEvent event;
+            while (batch.size() < batchSize && (event = queue.poll()) != null) {
+                size.decrementAndGet();
+                batch.add(event);
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                authEventBatchRepository.insertAll(batch);
+                written.increment(batch.size());
+            } catch (DataAccessException e) {
+                failed.increment(batch.size());
+                log.warn("Failed to write {} audit events: {}", batch.size(), e.getMessage());
+            }
+            batch.clear();
+        }
+    }
+
+    // дописываем остаток очереди при остановке
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+}
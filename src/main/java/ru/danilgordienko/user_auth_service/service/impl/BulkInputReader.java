@@ -0,0 +1,194 @@
+package ru.danilgordienko.user_auth_service.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ru.danilgordienko.user_auth_service.dto.BulkFormat;
+import ru.danilgordienko.user_auth_service.dto.BulkUserRecord;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+// Построчное чтение тела bulk-запроса прямо из потока: в памяти только текущая строка,
+// длина которой ограничена maxLineLength, так что расход памяти не зависит от размера тела.
+// NDJSON - JSON-объект BulkUserRecord на строку. CSV - первая строка заголовок с именами колонок
+// (login, email, password, passwordHash, roles), роли внутри поля через ';', поля с запятыми в кавычках.
+// Ошибка разбора строки не прерывает чтение, строка возвращается с текстом ошибки
+class BulkInputReader implements Closeable {
+
+    private static final List<String> CSV_COLUMNS = List.of("login", "email", "password", "passwordhash", "roles");
+
+    private final BufferedReader reader;
+    private final BulkFormat format;
+    private final ObjectMapper objectMapper;
+    private final int maxLineLength;
+    private final StringBuilder buffer = new StringBuilder();
+    // номер колонки CSV_COLUMNS в CSV, -1 - колонки нет
+    private int[] columns;
+    private long lineNumber;
+    private boolean lineTooLong;
+
+    BulkInputReader(InputStream input, BulkFormat format, ObjectMapper objectMapper, int maxLineLength) {
+        this.reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        this.format = format;
+        this.objectMapper = objectMapper;
+        this.maxLineLength = maxLineLength;
+    }
+
+    // следующая непустая строка или null в конце тела
+    BulkRow next() throws IOException {
+        String line;
+        do {
+            line = readLine();
+            if (line == null) {
+                return null;
+            }
+        } while (line.isBlank() && !lineTooLong);
+
+        if (lineTooLong) {
+            return BulkRow.failed(lineNumber, "Line is longer than " + maxLineLength + " characters");
+        }
+        if (format == BulkFormat.NDJSON) {
+            return parseJson(line);
+        }
+        if (columns == null) {
+            readHeader(line);
+            return next();
+        }
+        return parseCsv(line);
+    }
+
+    private BulkRow parseJson(String line) {
+        try {
+            BulkUserRecord user = objectMapper.readValue(line, BulkUserRecord.class);
+            // литерал null - корректный JSON, но не запись
+            if (user == null) {
+                return BulkRow.failed(lineNumber, "Expected a JSON object");
+            }
+            return new BulkRow(lineNumber, user, null);
+        } catch (JsonProcessingException e) {
+            return BulkRow.failed(lineNumber, "Malformed JSON: " + e.getOriginalMessage());
+        }
+    }
+
+    private void readHeader(String line) {
+        List<String> header = splitCsv(line).stream()
+                .map(name -> name.trim().toLowerCase(Locale.ROOT))
+                .toList();
+        columns = new int[CSV_COLUMNS.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = header.indexOf(CSV_COLUMNS.get(i));
+        }
+        if (columns[0] < 0) {
+            throw new IllegalStateException("CSV header must contain a login column, got: " + line);
+        }
+    }
+
+    private BulkRow parseCsv(String line) {
+        List<String> fields;
+        try {
+            fields = splitCsv(line);
+        } catch (IllegalArgumentException e) {
+            return BulkRow.failed(lineNumber, e.getMessage());
+        }
+        String roles = field(fields, 4);
+        return new BulkRow(lineNumber, new BulkUserRecord(
+                field(fields, 0),
+                field(fields, 1),
+                field(fields, 2),
+                field(fields, 3),
+                roles != null ? Arrays.asList(roles.split(";")) : null), null);
+    }
+
+    private String field(List<String> fields, int column) {
+        int index = columns[column];
+        if (index < 0 || index >= fields.size() || fields.get(index).isEmpty()) {
+            return null;
+        }
+        return fields.get(index);
+    }
+
+    // поля одной строки CSV (RFC 4180 без переносов строк внутри кавычек)
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    // строка без \n и \r в конце; что сверх maxLineLength - отбрасывается, а lineTooLong выставляется
+    private String readLine() throws IOException {
+        buffer.setLength(0);
+        lineTooLong = false;
+        int c = reader.read();
+        if (c == -1) {
+            return null;
+        }
+        while (c != -1 && c != '\n') {
+            if (buffer.length() < maxLineLength) {
+                buffer.append((char) c);
+            } else {
+                lineTooLong = true;
+            }
+            c = reader.read();
+        }
+        lineNumber++;
+        int length = buffer.length();
+        if (length > 0 && buffer.charAt(length - 1) == '\r') {
+            buffer.setLength(length - 1);
+        }
+        return buffer.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    // user == null, если строку не удалось разобрать; тогда error - причина
+    record BulkRow(long line, BulkUserRecord user, String error) {
+
+        static BulkRow failed(long line, String error) {
+            return new BulkRow(line, null, error);
+        }
+
+        String login() {
+            return user != null ? user.login() : null;
+        }
+
+        BulkRow withUser(BulkUserRecord user) {
+            return new BulkRow(line, user, error);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package ru.danilgordienko.user_auth_service.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import ru.danilgordienko.user_auth_service.dto.BulkFormat;
+import ru.danilgordienko.user_auth_service.dto.BulkResult;
+import ru.danilgordienko.user_auth_service.dto.BulkRowError;
+import ru.danilgordienko.user_auth_service.dto.BulkUserRecord;
+import ru.danilgordienko.user_auth_service.model.Role;
+import ru.danilgordienko.user_auth_service.service.BulkUserService;
+import ru.danilgordienko.user_auth_service.service.impl.BulkInputReader.BulkRow;
+import ru.danilgordienko.user_auth_service.service.impl.BulkUserWriter.ChunkResult;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+// Массовая выдача ролей и импорт пользователей из потока NDJSON/CSV.
+// Тело читается построчно, проверенные строки копятся в пачку из batch-size строк, и каждая пачка
+// пишется BulkUserWriter в своей транзакции. В памяти одновременно только одна пачка и не больше
+// max-errors описаний ошибок, поэтому память не зависит от размера входа
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BulkUserServiceImpl implements BulkUserService {
+
+    // хеши, которые понимает DelegatingPasswordEncoder; bcrypt без префикса пересчитается при первом логине
+    private static final Pattern PASSWORD_HASH =
+            Pattern.compile("\\{bcrypt}\\$2[aby]?\\$.+|\\{argon2}\\$argon2.+|\\$2[aby]?\\$.+");
+    private static final int MIN_PASSWORD_LENGTH = 6;
+
+    private final BulkUserWriter bulkUserWriter;
+    private final PasswordEncoder passwordEncoder;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.bulk.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.bulk.max-errors:1000}")
+    private int maxErrors;
+
+    @Value("${app.bulk.max-line-length:8192}")
+    private int maxLineLength;
+
+    @Override
+    public BulkResult grantRole(String role, BulkFormat format, InputStream body) throws IOException {
+        String roleName;
+        try {
+            roleName = parseRole(role);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException(e.getMessage());
+        }
+        BulkResult result = process(format, body, this::checkLogin, rows -> bulkUserWriter.grantRole(roleName, rows));
+        log.info("Bulk grant of role {}: {} rows, {} granted, {} skipped, {} failed",
+                roleName, result.processed(), result.succeeded(), result.skipped(), result.failed());
+        return result;
+    }
+
+    // пароли в открытом виде хешируются по одному через общий ограниченный пул, т.е. со скоростью
+    // обычной регистрации; для больших импортов стоит передавать готовый passwordHash
+    @Override
+    public BulkResult importUsers(BulkFormat format, InputStream body) throws IOException {
+        BulkResult result = process(format, body, this::prepareUser, bulkUserWriter::importUsers);
+        log.info("Bulk user import: {} rows, {} created, {} failed",
+                result.processed(), result.succeeded(), result.failed());
+        return result;
+    }
+
+    private BulkResult process(BulkFormat format, InputStream body, UnaryOperator<BulkUserRecord> prepare,
+                               Function<List<BulkRow>, ChunkResult> write) throws IOException {
+        Report report = new Report(maxErrors);
+        List<BulkRow> chunk = new ArrayList<>(batchSize);
+        try (BulkInputReader reader = new BulkInputReader(body, format, objectMapper, maxLineLength)) {
+            BulkRow row;
+            while ((row = reader.next()) != null) {
+                report.processed++;
+                if (row.error() != null) {
+                    report.fail(row, row.error());
+                    continue;
+                }
+                try {
+                    chunk.add(row.withUser(prepare.apply(row.user())));
+                } catch (IllegalArgumentException e) {
+                    report.fail(row, e.getMessage());
+                    continue;
+                }
+                if (chunk.size() == batchSize) {
+                    write(chunk, write, report);
+                    chunk.clear();
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            write(chunk, write, report);
+        }
+        return report.toResult();
+    }
+
+    // пачка откатилась целиком - все ее строки считаются неуспешными, следующие пачки пишутся дальше
+    private static void write(List<BulkRow> chunk, Function<List<BulkRow>, ChunkResult> write, Report report) {
+        try {
+            ChunkResult result = write.apply(chunk);
+            report.succeeded += result.succeeded();
+            report.skipped += result.skipped();
+            result.errors().forEach(report::fail);
+        } catch (DataAccessException e) {
+            log.warn("Bulk batch of {} rows failed: {}", chunk.size(), e.getMostSpecificCause().getMessage());
+            chunk.forEach(row -> report.fail(row, "Batch failed: " + e.getMostSpecificCause().getMessage()));
+        }
+    }
+
+    private BulkUserRecord checkLogin(BulkUserRecord user) {
+        if (user.login() == null || user.login().isBlank()) {
+            throw new IllegalArgumentException("login must not be blank");
+        }
+        return user;
+    }
+
+    // проверка строки импорта и хеширование пароля до начала транзакции
+    private BulkUserRecord prepareUser(BulkUserRecord user) {
+        String violations = validator.validate(user).stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.joining(", "));
+        if (!violations.isEmpty()) {
+            throw new IllegalArgumentException(violations);
+        }
+        List<String> roles = user.roles() == null || user.roles().isEmpty()
+                ? List.of(Role.GUEST.name())
+                : user.roles().stream().map(BulkUserServiceImpl::parseRole).distinct().toList();
+
+        String passwordHash;
+        if (user.passwordHash() != null) {
+            if (!PASSWORD_HASH.matcher(user.passwordHash()).matches()) {
+                throw new IllegalArgumentException("passwordHash must be a bcrypt or argon2 hash");
+            }
+            passwordHash = user.passwordHash();
+        } else if (user.password() == null || user.password().length() < MIN_PASSWORD_LENGTH) {
+            throw new IllegalArgumentException("password must be at least " + MIN_PASSWORD_LENGTH);
+        } else {
+            try {
+                passwordHash = passwordEncoder.encode(user.password());
+            } catch (RuntimeException e) {
+                // пул хеширования перегружен логинами - строка отклоняется, импорт продолжается
+                throw new IllegalArgumentException(e.getMessage());
+            }
+        }
+        return new BulkUserRecord(user.login(), user.email(), null, passwordHash, roles);
+    }
+
+    private static String parseRole(String role) {
+        try {
+            return Role.valueOf(role.trim().toUpperCase(Locale.ROOT)).name();
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown role " + role);
+        }
+    }
+
+    // счетчики и первые maxErrors ошибок
+    private static final class Report {
+
+        private final int maxErrors;
+        private final List<BulkRowError> errors = new ArrayList<>();
+        private long processed;
+        private long succeeded;
+        private long skipped;
+        private long failed;
+
+        private Report(int maxErrors) {
+            this.maxErrors = maxErrors;
+        }
+
+        void fail(BulkRow row, String message) {
+            fail(new BulkRowError(row.line(), row.login(), message));
+        }
+
+        void fail(BulkRowError error) {
+            failed++;
+            if (errors.size() < maxErrors) {
+                errors.add(error);
+            }
+        }
+
+        BulkResult toResult() {
+            return new BulkResult(processed, succeeded, skipped, failed, List.copyOf(errors), failed > errors.size());
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package ru.danilgordienko.user_auth_service.service.impl;
+
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.danilgordienko.user_auth_service.config.InvalidationBus;
+import ru.danilgordienko.user_auth_service.config.TokenVersions;
+import ru.danilgordienko.user_auth_service.dto.BulkRowError;
+import ru.danilgordienko.user_auth_service.model.AuthEventType;
+import ru.danilgordienko.user_auth_service.model.InvalidationEvent.UserChanged;
+import ru.danilgordienko.user_auth_service.repository.UserBatchRepository;
+import ru.danilgordienko.user_auth_service.repository.UserBatchRepository.NewUser;
+import ru.danilgordienko.user_auth_service.repository.UserBatchRepository.RoleGrant;
+import ru.danilgordienko.user_auth_service.service.impl.BulkInputReader.BulkRow;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+// Запись одной пачки bulk-операции в отдельной транзакции: ошибка БД откатывает только эту пачку,
+// а долгий импорт не держит одну транзакцию и блокировки до конца тела запроса.
+// Строки приходят уже разобранными и проверенными, пароли - захешированными
+@Component
+@RequiredArgsConstructor
+public class BulkUserWriter {
+
+    private final UserBatchRepository userBatchRepository;
+    private final TokenVersions tokenVersions;
+    private final UserDetailsCache userDetailsCache;
+    private final InvalidationBus invalidationBus;
+    private final AuthEventPublisher authEventPublisher;
+
+    // выдает роль пользователям пачки: один SELECT логинов, один batch INSERT в user_roles
+    // и один UPDATE версий токенов у тех, кому роль действительно добавлена
+    @Transactional
+    public ChunkResult grantRole(String role, List<BulkRow> rows) {
+        Map<String, Long> ids = userBatchRepository.findIdsByLogin(
+                rows.stream().map(BulkRow::login).collect(Collectors.toSet()));
+        List<BulkRowError> errors = new ArrayList<>();
+        // повтор логина в пачке - пропуск, а не вторая вставка
+        Map<Long, String> pending = new LinkedHashMap<>();
+        int skipped = 0;
+        for (BulkRow row : rows) {
+            Long id = ids.get(row.login());
+            if (id == null) {
+                errors.add(new BulkRowError(row.line(), row.login(), "User not found"));
+            } else if (pending.putIfAbsent(id, row.login()) != null) {
+                skipped++;
+            }
+        }
+
+        List<Long> userIds = new ArrayList<>(pending.keySet());
+        int[] inserted = userBatchRepository.insertRoles(userIds.stream()
+                .map(id -> new RoleGrant(id, role))
+                .toList());
+        List<Long> granted = new ArrayList<>();
+        for (int i = 0; i < inserted.length; i++) {
+            if (inserted[i] > 0) {
+                granted.add(userIds.get(i));
+            } else {
+                skipped++;
+            }
+        }
+        if (!granted.isEmpty()) {
+            // как в JwtAuthService.addAdminRole: токены со старыми ролями перестают приниматься
+            userBatchRepository.incrementTokenVersions(granted, Instant.now());
+            userBatchRepository.findTokenVersions(granted).forEach((login, tokenVersion) -> {
+                tokenVersions.advanceAfterCommit(login, tokenVersion);
+                userDetailsCache.invalidateAfterCommit(login);
+                invalidationBus.publish(new UserChanged(login, tokenVersion));
+                authEventPublisher.publish(AuthEventType.ROLE_GRANTED, login, null, role);
+            });
+        }
+        return new ChunkResult(granted.size(), skipped, errors);
+    }
+
+    // создает пользователей пачки: batch INSERT в users, SELECT их id и batch INSERT ролей
+    @Transactional
+    public ChunkResult importUsers(List<BulkRow> rows) {
+        int[] inserted = userBatchRepository.insertUsers(rows.stream()
+                .map(row -> new NewUser(row.login(), row.user().email(), row.user().passwordHash()))
+                .toList());
+        List<BulkRowError> errors = new ArrayList<>();
+        List<BulkRow> created = new ArrayList<>();
+        for (int i = 0; i < inserted.length; i++) {
+            BulkRow row = rows.get(i);
+            if (inserted[i] > 0) {
+                created.add(row);
+            } else {
+                errors.add(new BulkRowError(row.line(), row.login(), "User already exists"));
+            }
+        }
+        if (created.isEmpty()) {
+            return new ChunkResult(0, 0, errors);
+        }
+
+        Map<String, Long> ids = userBatchRepository.findIdsByLogin(created.stream().map(BulkRow::login).toList());
+        List<RoleGrant> grants = new ArrayList<>();
+        for (BulkRow row : created) {
+            long id = ids.get(row.login());
+            row.user().roles().forEach(role -> grants.add(new RoleGrant(id, role)));
+        }
+        userBatchRepository.insertRoles(grants);
+        created.forEach(row -> authEventPublisher.publish(AuthEventType.REGISTER, row.login(), null, "bulk import"));
+        return new ChunkResult(created.size(), 0, errors);
+    }
+
+    public record ChunkResult(int succeeded, int skipped, List<BulkRowError> errors) {
+    }
+}
@@ -0,0 +1,53 @@
+package ru.danilgordienko.user_auth_service.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.danilgordienko.user_auth_service.service.LoginAttemptStore;
+
+import java.time.Duration;
+
+// Счетчики попыток в памяти процесса. Память ограничена числом ключей,
+// ключ без попыток дольше окна удаляется сам
+@Component
+public class InMemoryLoginAttemptStore implements LoginAttemptStore {
+
+    private final Cache<String, SlidingWindowCounter> counters;
+    private final int bucketCount;
+    private final long bucketMillis;
+
+    public InMemoryLoginAttemptStore(@Value("${app.security.login-throttle.window:1m}") Duration window,
+                                     @Value("${app.security.login-throttle.buckets:12}") int bucketCount,
+                                     @Value("${app.security.login-throttle.max-keys:100000}") long maxKeys) {
+        this.bucketCount = bucketCount;
+        this.bucketMillis = Math.max(1, window.toMillis() / bucketCount);
+        this.counters = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(window)
+                .build();
+    }
+
+    @Override
+    public int acquire(String key) {
+        SlidingWindowCounter counter = counters.get(key, k -> new SlidingWindowCounter(bucketCount, bucketMillis));
+        long now = System.currentTimeMillis();
+        // сумма читается после своего инкремента, поэтому из одновременных попыток
+        // лимит пропустит не больше разрешенного числа
+        counter.increment(now);
+        return counter.sum(now);
+    }
+
+    @Override
+    public void release(String key) {
+        SlidingWindowCounter counter = counters.getIfPresent(key);
+        if (counter != null) {
+            counter.decrement(System.currentTimeMillis());
+        }
+    }
+
+    @Override
+    public void reset(String key) {
+        counters.invalidate(key);
+    }
+}
@@ -1,35 +1,55 @@
 package ru.danilgordienko.user_auth_service.service.impl;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.JwtException;
 import jakarta.annotation.PostConstruct;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import ru.danilgordienko.user_auth_service.config.AccessTokenDenylist;
+import ru.danilgordienko.user_auth_service.config.AccessTokenService;
+import ru.danilgordienko.user_auth_service.config.AuthMetrics;
+import ru.danilgordienko.user_auth_service.config.InvalidationBus;
+import ru.danilgordienko.user_auth_service.config.AuthMetrics.Outcome;
+import ru.danilgordienko.user_auth_service.config.AuthMetrics.Stage;
 import ru.danilgordienko.user_auth_service.config.JWTService;
+import ru.danilgordienko.user_auth_service.config.TokenDigest;
+import ru.danilgordienko.user_auth_service.config.RefreshTokenStorageMigration;
+import ru.danilgordienko.user_auth_service.config.TokenVersions;
 import ru.danilgordienko.user_auth_service.dto.AuthResponse;
+import ru.danilgordienko.user_auth_service.dto.IntrospectionResponse;
 import ru.danilgordienko.user_auth_service.dto.LoginRequest;
 import ru.danilgordienko.user_auth_service.dto.RegisterRequest;
 import ru.danilgordienko.user_auth_service.exception.TokenAlreadyRevokedException;
+import ru.danilgordienko.user_auth_service.exception.TokenException;
 import ru.danilgordienko.user_auth_service.exception.TokenExpiredException;
 import ru.danilgordienko.user_auth_service.exception.TokenNotFoundException;
+import ru.danilgordienko.user_auth_service.exception.TooManyLoginAttemptsException;
 import ru.danilgordienko.user_auth_service.exception.UserNotFoundException;
 import ru.danilgordienko.user_auth_service.model.*;
+import ru.danilgordienko.user_auth_service.model.InvalidationEvent.AccessTokenRevoked;
+import ru.danilgordienko.user_auth_service.model.InvalidationEvent.UserChanged;
 import ru.danilgordienko.user_auth_service.repository.RefreshTokenRepository;
 import ru.danilgordienko.user_auth_service.repository.UserRepository;
 import ru.danilgordienko.user_auth_service.service.AuthService;
 
 import java.io.IOException;
+import java.time.Instant;
+import java.util.Optional;
 import java.util.Set;
+import java.util.UUID;
 
 @Service
 @RequiredArgsConstructor
@@ -42,6 +62,19 @@ public class JwtAuthService implements AuthService {
     private final RefreshTokenRepository refreshTokenRepository;
     private final UserDetailsService userDetailsService;
     private final JWTService jwtService;
+    private final AccessTokenService accessTokenService;
+    private final AccessTokenDenylist accessTokenDenylist;
+    private final InvalidationBus invalidationBus;
+    private final TokenVersions tokenVersions;
+    private final UserDetailsCache userDetailsCache;
+    private final LoginThrottle loginThrottle;
+    private final AuthEventPublisher authEventPublisher;
+    private final AuthMetrics authMetrics;
+    private final RefreshTokenStorageMigration refreshTokenStorageMigration;
+
+    // сколько последних refresh токенов (сессий) хранить на пользователя, 0 - без ограничения
+    @Value("${app.security.max-sessions-per-user:1}")
+    private int maxSessionsPerUser;
 
 
     // регисрация админа по умолчанию
@@ -58,7 +91,7 @@ public class JwtAuthService implements AuthService {
                     .roles(Set.of(Role.ADMIN.name()))
                     .build();
             userRepository.save(admin);
-            System.out.println("Default admin user created: " + defaultAdminLogin);
+            log.info("Default admin user created: {}", defaultAdminLogin);
         }
     }
 
@@ -66,24 +99,46 @@ public class JwtAuthService implements AuthService {
     // аунтификация пользователя по учетным данным
     @Override
     @Transactional
-    public AuthResponse login(LoginRequest loginRequest) {
-        log.info("Attempting login for user: {}", loginRequest.getLogin());
+    public AuthResponse login(LoginRequest loginRequest, String clientIp) {
+        log.debug("Attempting login for user: {}", loginRequest.getLogin());
+        // отсекаем перебор паролей до хеширования
+        try {
+            loginThrottle.acquire(loginRequest.getLogin(), clientIp);
+        } catch (TooManyLoginAttemptsException e) {
+            authEventPublisher.publish(AuthEventType.LOGIN_THROTTLED, loginRequest.getLogin(), clientIp, null);
+            throw e;
+        }
         // аунтфицируем по логину и паролю
-        authenticationManager.authenticate(
-            new UsernamePasswordAuthenticationToken(
-                    loginRequest.getLogin(),
-                    loginRequest.getPassword()
-            )
-        );
+        try {
+            authenticationManager.authenticate(
+                new UsernamePasswordAuthenticationToken(
+                        loginRequest.getLogin(),
+                        loginRequest.getPassword()
+                )
+            );
+        } catch (AuthenticationException e) {
+            // попытка уже учтена при резервировании
+            authEventPublisher.publish(AuthEventType.LOGIN_FAILURE, loginRequest.getLogin(), clientIp, e.getMessage());
+            throw e;
+        } catch (RuntimeException e) {
+            loginThrottle.release(loginRequest.getLogin(), clientIp);
+            throw e;
+        }
+        loginThrottle.recordSuccess(loginRequest.getLogin(), clientIp);
+        authEventPublisher.publish(AuthEventType.LOGIN_SUCCESS, loginRequest.getLogin(), clientIp, null);
         var user = getUserByLogin(loginRequest.getLogin());
 ;        // генерируем токены
-        var accessToken = jwtService.generateAccessToken(UserDetailsImpl.build(user));
-        var  refreshToken = jwtService.generateRefreshToken(UserDetailsImpl.build(user));
-        // удаляем все старые токены юзера
-        refreshTokenRepository.deleteAllByUser(user);
+        var accessToken = accessTokenService.issue(UserDetailsImpl.build(user));
+        // новая цепочка ротации refresh токенов
+        var  refreshToken = jwtService.generateRefreshToken(UserDetailsImpl.build(user), UUID.randomUUID(), 0,
+                accessToken.tokenId());
         // сохраняем refresh токен
         saveRefreshToken(refreshToken, user);
-        return new  AuthResponse(accessToken, refreshToken);
+        // удаляем старые токены юзера сверх лимита сессий
+        if (maxSessionsPerUser > 0) {
+            refreshTokenRepository.deleteAllExceptNewest(user.getId(), maxSessionsPerUser);
+        }
+        return new  AuthResponse(accessToken.value(), refreshToken.value());
     }
 
     @Override
@@ -98,22 +153,31 @@ public class JwtAuthService implements AuthService {
                 .build();
         userRepository.save(user);
         // генерируем токены
-        var accessToken = jwtService.generateAccessToken(UserDetailsImpl.build(user));
-        var  refreshToken = jwtService.generateRefreshToken(UserDetailsImpl.build(user));
+        var accessToken = accessTokenService.issue(UserDetailsImpl.build(user));
+        var  refreshToken = jwtService.generateRefreshToken(UserDetailsImpl.build(user), UUID.randomUUID(), 0,
+                accessToken.tokenId());
         // сохраняем refresh токен
         saveRefreshToken(refreshToken, user);
-        return new  AuthResponse(accessToken, refreshToken);
+        authEventPublisher.publish(AuthEventType.REGISTER, user.getLogin());
+        return new  AuthResponse(accessToken.value(), refreshToken.value());
     }
 
     // сохраняет токен в бд
-    private void saveRefreshToken(String refreshToken, User user)
+    private void saveRefreshToken(IssuedToken refreshToken, User user)
     {
+        long start = System.nanoTime();
+        byte[] tokenHash = TokenDigest.sha256(refreshToken.value());
         refreshTokenRepository.save(
                 RefreshToken.builder()
-                        .token(refreshToken)
+                        .tokenHash(tokenHash)
                         .user(user)
+                        .expiresAt(refreshToken.expiresAt())
+                        .familyId(refreshToken.familyId())
+                        .generation(refreshToken.generation())
                         .build()
         );
+        refreshTokenStorageMigration.writeLegacyToken(tokenHash, refreshToken.value());
+        authMetrics.record(Stage.REFRESH_TOKEN_SAVE, Outcome.SUCCESS, start);
     }
 
     // получение токена из http заголовка
@@ -126,66 +190,151 @@ public class JwtAuthService implements AuthService {
         return null;
     }
 
-    // проверки что токен корректный
-    private void validateToken(String token) {
-        var storedToken = refreshTokenRepository.findByToken(token)
-                .orElseThrow(() -> new TokenNotFoundException("Invalid refresh token"));
-        // не просрочен
-        if (jwtService.isTokenExpired(token)) {
-            throw new TokenExpiredException("Refresh token is expired");
-        }
-        //не отозван
-        if (storedToken.isRevoked()) {
-            throw new TokenAlreadyRevokedException("Token already revoked");
+    // причина отказа выясняется отдельным запросом только на пути ошибки
+    private TokenException rejectedTokenException(byte[] tokenHash) {
+        long start = System.nanoTime();
+        boolean exists = refreshTokenRepository.existsByTokenHash(tokenHash);
+        authMetrics.record(Stage.REFRESH_TOKEN_FIND, exists ? Outcome.REVOKED : Outcome.NOT_FOUND, start);
+        return exists
+                ? new TokenAlreadyRevokedException("Token already revoked")
+                : new TokenNotFoundException("Invalid refresh token");
+    }
+
+    // строку, записанную узлом прошлой версии во время раскатки, находим по самому токену
+    private boolean revoke(String token, byte[] tokenHash) {
+        return revokeByTokenHash(tokenHash)
+                || (refreshTokenStorageMigration.claimLegacyToken(tokenHash, token) && revokeByTokenHash(tokenHash));
+    }
+
+    // условный UPDATE по уникальному индексу: из параллельных запросов с одним токеном пройдет только один.
+    // 0 строк - токен не найден или уже отозван, причину выясняет и учитывает rejectedTokenException
+    private boolean revokeByTokenHash(byte[] tokenHash) {
+        long start = System.nanoTime();
+        boolean revoked = refreshTokenRepository.revokeByTokenHash(tokenHash) > 0;
+        authMetrics.record(Stage.REFRESH_TOKEN_REVOKE, revoked ? Outcome.SUCCESS : Outcome.NO_MATCH, start);
+        return revoked;
+    }
+
+    // токен уже заменен или отозван. Если в его цепочке остался действующий токен,
+    // значит старый предъявлен повторно (скорее всего украден) - отзываем всю цепочку одним UPDATE
+    private TokenException reusedTokenException(byte[] tokenHash, VerifiedToken verifiedToken) {
+        if (verifiedToken.familyId() != null
+                && refreshTokenRepository.revokeFamily(verifiedToken.familyId()) > 0) {
+            log.warn("Refresh token reuse detected for user {}, token family {} revoked",
+                    verifiedToken.subject(), verifiedToken.familyId());
+            authEventPublisher.publish(AuthEventType.REFRESH_REUSE_DETECTED, verifiedToken.subject(),
+                    null, "family " + verifiedToken.familyId());
+            return new TokenAlreadyRevokedException("Refresh token reuse detected, session revoked");
         }
+        return rejectedTokenException(tokenHash);
     }
 
-    // получение нового access токена
+    // получение нового access токена с ротацией refresh токена:
+    // предъявленный токен атомарно выводится из обращения, взамен выдается следующий из той же цепочки
     @Override
+    @Transactional(dontRollbackOn = TokenException.class)
     public void refresh(HttpServletRequest request, HttpServletResponse  response) throws IOException {
-        log.info("Attempting to refresh access token using refresh token");
+        log.debug("Attempting to refresh access token using refresh token");
         String refreshToken = getTokenFromRequest(request);
 
-        // Извлекаем имя пользователя из токена
-        String username = jwtService.getLoginFromToken(refreshToken);
+        // Разбираем токен один раз и извлекаем имя пользователя
+        VerifiedToken verifiedToken = jwtService.verify(refreshToken);
+        String username = verifiedToken.subject();
         log.debug("Extracted username from refresh token: {}", username);
 
+        if (verifiedToken.isExpired()) {
+            throw new TokenExpiredException("Refresh token is expired");
+        }
+        byte[] tokenHash = TokenDigest.sha256(refreshToken);
+        if (!revoke(refreshToken, tokenHash)) {
+            throw reusedTokenException(tokenHash, verifiedToken);
+        }
+
         // Загружаем данные пользователя по логину
-        UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+        var userDetails = (UserDetailsImpl) userDetailsService.loadUserByUsername(username);
 
-        validateToken(refreshToken);
+        // токены, выданные до появления цепочек, начинают новую
+        UUID familyId = verifiedToken.familyId() != null ? verifiedToken.familyId() : UUID.randomUUID();
+        var accessToken = accessTokenService.issue(userDetails);
+        var nextRefreshToken = jwtService.generateRefreshToken(userDetails, familyId, verifiedToken.generation() + 1,
+                accessToken.tokenId());
+        saveRefreshToken(nextRefreshToken, userRepository.getReferenceById(userDetails.getId()));
 
-        var accessToken = jwtService.generateAccessToken(userDetails);
-        var authResponse = new AuthResponse(accessToken, refreshToken);
-        log.info("Access token refreshed for user: {}", username);
+        var authResponse = new AuthResponse(accessToken.value(), nextRefreshToken.value());
+        log.debug("Access token refreshed for user: {}", username);
+        authEventPublisher.publish(AuthEventType.REFRESH, username);
 
         new ObjectMapper().writeValue(response.getOutputStream(), authResponse);
     }
 
+    // выход со всех устройств: все refresh токены удаляются, все выданные access токены
+    // отклоняются по версии, без перечисления их jti
+    @Override
+    @Transactional
+    public void logoutAll(String login) {
+        User user = getUserByLogin(login);
+        int tokenVersion = tokenVersions.bump(login);
+        int deleted = refreshTokenRepository.deleteAllByUser(user);
+        userDetailsCache.invalidateAfterCommit(login);
+        invalidationBus.publish(new UserChanged(login, tokenVersion));
+        authEventPublisher.publish(AuthEventType.LOGOUT, login, null, "all sessions");
+        log.debug("User {} logged out everywhere, {} refresh tokens deleted", login, deleted);
+    }
+
     // отзыв refresh токена
     @Override
     @Transactional
     public void logout(HttpServletRequest request) {
-        log.info("Attempting logout with refresh token");
+        log.debug("Attempting logout with refresh token");
         String refreshToken = getTokenFromRequest(request);
 
-        validateToken(refreshToken);
-
+        VerifiedToken verifiedToken = jwtService.verify(refreshToken);
+        if (verifiedToken.isExpired()) {
+            throw new TokenExpiredException("Refresh token is expired");
+        }
         revokeToken(refreshToken);
-        log.info("Refresh token revoked: {}", refreshToken);
+        // access токен этой сессии перестает приниматься сразу, а не по истечении
+        if (verifiedToken.accessTokenId() != null) {
+            Instant expiresAt = accessTokenDenylist.revoke(verifiedToken.accessTokenId());
+            invalidationBus.publish(new AccessTokenRevoked(verifiedToken.accessTokenId(), expiresAt));
+        }
+        authEventPublisher.publish(AuthEventType.LOGOUT, verifiedToken.subject());
+        log.debug("Refresh token revoked: {}", TokenDigest.redact(refreshToken));
     }
 
-    // помечает refresh токен у пользователя как отозванный
+    // помечает refresh токен как отозванный одним условным UPDATE,
+    // из двух параллельных logout успешным будет только один
     public void revokeToken(String token) {
-        refreshTokenRepository.findByToken(token).ifPresent(rt -> {
-            rt.setRevoked(true);
-            refreshTokenRepository.save(rt);
-        });
+        byte[] tokenHash = TokenDigest.sha256(token);
+        if (!revoke(token, tokenHash)) {
+            throw rejectedTokenException(tokenHash);
+        }
+    }
+
+    // проверка access токена для сервисов, которые не разбирают токены сами.
+    // Отклоненный, просроченный или неизвестный токен - active=false без объяснения причины
+    @Override
+    public IntrospectionResponse introspect(String token) {
+        VerifiedToken verifiedToken;
+        try {
+            verifiedToken = accessTokenService.verify(token);
+        } catch (JwtException | TokenException | IllegalArgumentException e) {
+            log.debug("Token introspection failed: {}", e.getMessage());
+            return IntrospectionResponse.inactive();
+        }
+        if (verifiedToken.isExpired() || accessTokenService.isRevoked(verifiedToken)) {
+            return IntrospectionResponse.inactive();
+        }
+        return new IntrospectionResponse(true, verifiedToken.subject(), verifiedToken.id(),
+                verifiedToken.email(), verifiedToken.roles(), verifiedToken.expiresAt().getEpochSecond());
     }
 
     // получение пользователя по логину
     private User getUserByLogin(String login) {
-        return userRepository.findByLogin(login)
+        long start = System.nanoTime();
+        Optional<User> user = userRepository.findByLogin(login);
+        authMetrics.record(Stage.USER_FIND, user.isPresent() ? Outcome.SUCCESS : Outcome.NOT_FOUND, start);
+        return user
                 .orElseThrow(() -> {
                     log.warn("User not found: {}", login);
                     return  new UserNotFoundException("User " +
@@ -203,6 +352,11 @@ public class JwtAuthService implements AuthService {
         }
         user.getRoles().add(Role.ADMIN.name());
         userRepository.save(user);
+        // токены со старыми ролями в claims перестают приниматься сразу
+        int tokenVersion = tokenVersions.bump(login);
+        userDetailsCache.invalidateAfterCommit(login);
+        invalidationBus.publish(new UserChanged(login, tokenVersion));
+        authEventPublisher.publish(AuthEventType.ROLE_GRANTED, login, null, Role.ADMIN.name());
     }
 
     @Transactional
@@ -214,6 +368,11 @@ public class JwtAuthService implements AuthService {
 
         user.getRoles().add(Role.PREMIUM_USER.name());
         userRepository.save(user);
+        // токены со старыми ролями в claims перестают приниматься сразу
+        int tokenVersion = tokenVersions.bump(login);
+        userDetailsCache.invalidateAfterCommit(login);
+        invalidationBus.publish(new UserChanged(login, tokenVersion));
+        authEventPublisher.publish(AuthEventType.ROLE_GRANTED, login, null, Role.PREMIUM_USER.name());
     }
 
 
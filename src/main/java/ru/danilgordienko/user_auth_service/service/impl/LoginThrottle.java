@@ -0,0 +1,72 @@
+package ru.danilgordienko.user_auth_service.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.danilgordienko.user_auth_service.exception.TooManyLoginAttemptsException;
+import ru.danilgordienko.user_auth_service.service.LoginAttemptStore;
+
+import java.time.Duration;
+
+// Ограничение неудачных попыток входа по логину и по IP в скользящем окне.
+// Проверка выполняется до хеширования пароля, поэтому перебор паролей не нагружает CPU.
+// Каждая попытка считается неудачной, пока не завершилась успешно
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LoginThrottle {
+
+    private final LoginAttemptStore loginAttemptStore;
+
+    @Value("${app.security.login-throttle.max-failures-per-login:10}")
+    private int maxFailuresPerLogin;
+
+    @Value("${app.security.login-throttle.max-failures-per-ip:100}")
+    private int maxFailuresPerIp;
+
+    @Value("${app.security.login-throttle.window:1m}")
+    private Duration window;
+
+    // Попытка резервируется до хеширования пароля: счетчики увеличиваются сразу,
+    // поэтому параллельные запросы не проходят проверку все разом.
+    // Отклоненная попытка возвращается, чтобы блокировка не продлевалась сама собой
+    public void acquire(String login, String clientIp) {
+        String loginKey = loginKey(login);
+        if (loginAttemptStore.acquire(loginKey) > maxFailuresPerLogin) {
+            loginAttemptStore.release(loginKey);
+            log.warn("Too many failed login attempts for user {}", login);
+            throw new TooManyLoginAttemptsException("Too many failed login attempts, retry later", window);
+        }
+        if (clientIp != null && loginAttemptStore.acquire(ipKey(clientIp)) > maxFailuresPerIp) {
+            loginAttemptStore.release(ipKey(clientIp));
+            loginAttemptStore.release(loginKey);
+            log.warn("Too many failed login attempts from {}", clientIp);
+            throw new TooManyLoginAttemptsException("Too many failed login attempts, retry later", window);
+        }
+    }
+
+    // попытка завершилась не из-за неверного пароля - резерв возвращается
+    public void release(String login, String clientIp) {
+        loginAttemptStore.release(loginKey(login));
+        if (clientIp != null) {
+            loginAttemptStore.release(ipKey(clientIp));
+        }
+    }
+
+    // успешный вход сбрасывает счетчик логина, по IP возвращается только резерв этой попытки
+    public void recordSuccess(String login, String clientIp) {
+        loginAttemptStore.reset(loginKey(login));
+        if (clientIp != null) {
+            loginAttemptStore.release(ipKey(clientIp));
+        }
+    }
+
+    private static String loginKey(String login) {
+        return "login:" + login;
+    }
+
+    private static String ipKey(String clientIp) {
+        return "ip:" + clientIp;
+    }
+}
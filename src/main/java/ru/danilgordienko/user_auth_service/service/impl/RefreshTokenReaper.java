@@ -0,0 +1,70 @@
+package ru.danilgordienko.user_auth_service.service.impl;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.danilgordienko.user_auth_service.repository.RefreshTokenRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+// Фоновая очистка refresh_tokens от отозванных и просроченных строк.
+// Удаляет пачками по id, каждая пачка - отдельная короткая транзакция, между пачками пауза
+@Slf4j
+@Component
+public class RefreshTokenReaper {
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final DistributionSummary purgedRows;
+    private final Timer runTimer;
+
+    @Value("${app.security.refresh-token-reaper.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.security.refresh-token-reaper.pause:50ms}")
+    private Duration pause;
+
+    public RefreshTokenReaper(RefreshTokenRepository refreshTokenRepository, MeterRegistry meterRegistry) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.purgedRows = DistributionSummary.builder("auth.refresh_tokens.purged")
+                .description("Refresh tokens deleted per reaper run")
+                .register(meterRegistry);
+        this.runTimer = Timer.builder("auth.refresh_tokens.purge")
+                .description("Refresh token reaper run duration")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.security.refresh-token-reaper.interval:10m}",
+            initialDelayString = "${app.security.refresh-token-reaper.initial-delay:1m}")
+    public void purge() {
+        long start = System.nanoTime();
+        Instant now = Instant.now();
+        long lastId = 0;
+        int purged = 0;
+        try {
+            while (true) {
+                List<Long> ids = refreshTokenRepository.findPurgeableIds(lastId, now, batchSize);
+                if (ids.isEmpty()) {
+                    break;
+                }
+                purged += refreshTokenRepository.deleteAllByIdIn(ids);
+                lastId = ids.get(ids.size() - 1);
+                if (ids.size() < batchSize) {
+                    break;
+                }
+                Thread.sleep(pause.toMillis());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            purgedRows.record(purged);
+            runTimer.record(Duration.ofNanos(System.nanoTime() - start));
+        }
+        log.info("Refresh token reaper deleted {} rows", purged);
+    }
+}
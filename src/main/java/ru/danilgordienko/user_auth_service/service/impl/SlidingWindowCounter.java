@@ -0,0 +1,70 @@
+package ru.danilgordienko.user_auth_service.service.impl;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Счетчик событий в скользящем окне на кольцевом буфере корзин без блокировок.
+// Каждая корзина - один long: старшие биты хранят номер временного слота, младшие - счетчик.
+// Корзина, оставшаяся от прошлого оборота кольца, обнуляется тем же CAS, что и увеличивает счетчик
+class SlidingWindowCounter {
+
+    private static final int COUNT_BITS = 24;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+    private final AtomicLongArray buckets;
+    private final long bucketMillis;
+
+    SlidingWindowCounter(int bucketCount, long bucketMillis) {
+        this.buckets = new AtomicLongArray(bucketCount);
+        this.bucketMillis = bucketMillis;
+    }
+
+    void increment(long nowMillis) {
+        long slot = nowMillis / bucketMillis;
+        int index = (int) (slot % buckets.length());
+        while (true) {
+            long current = buckets.get(index);
+            long next;
+            if (current >>> COUNT_BITS != slot) {
+                next = (slot << COUNT_BITS) | 1;
+            } else if ((current & COUNT_MASK) == COUNT_MASK) {
+                return;
+            } else {
+                next = current + 1;
+            }
+            if (buckets.compareAndSet(index, current, next)) {
+                return;
+            }
+        }
+    }
+
+    // возврат ранее учтенного события: уменьшаем самую свежую непустую корзину окна
+    void decrement(long nowMillis) {
+        long slot = nowMillis / bucketMillis;
+        for (long candidate = slot; candidate > slot - buckets.length(); candidate--) {
+            int index = (int) (candidate % buckets.length());
+            while (true) {
+                long current = buckets.get(index);
+                if (current >>> COUNT_BITS != candidate || (current & COUNT_MASK) == 0) {
+                    break;
+                }
+                if (buckets.compareAndSet(index, current, current - 1)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    int sum(long nowMillis) {
+        long slot = nowMillis / bucketMillis;
+        long oldestSlot = slot - buckets.length() + 1;
+        int sum = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            long value = buckets.get(i);
+            long bucketSlot = value >>> COUNT_BITS;
+            if (bucketSlot >= oldestSlot && bucketSlot <= slot) {
+                sum += (int) (value & COUNT_MASK);
+            }
+        }
+        return sum;
+    }
+}
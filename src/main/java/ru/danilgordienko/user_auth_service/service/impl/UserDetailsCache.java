@@ -0,0 +1,115 @@
+package ru.danilgordienko.user_auth_service.service.impl;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.danilgordienko.user_auth_service.model.InvalidationEvent.Resync;
+import ru.danilgordienko.user_auth_service.model.InvalidationEvent.UserChanged;
+import ru.danilgordienko.user_auth_service.model.UserDetailsImpl;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+// Кеш UserDetailsImpl по логину, ограниченный по размеру и времени жизни записи.
+// Счетчики попаданий, промахов и вытеснений публикуются в Micrometer как cache.* с тегом cache=userDetails.
+// Загрузка из БД идет вне блокировок ConcurrentHashMap (synchronized на бакете), иначе на
+// виртуальных потоках JDBC-запрос внутри compute закреплял бы carrier-поток
+@Component
+public class UserDetailsCache {
+
+    private final AsyncCache<String, UserDetailsImpl> cache;
+
+    public UserDetailsCache(@Value("${app.security.user-cache.max-size:10000}") long maxSize,
+                            @Value("${app.security.user-cache.ttl:5m}") Duration ttl,
+                            MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache.synchronous(), "userDetails");
+    }
+
+    // возвращает пользователя из кеша либо загружает его, исключение загрузчика не кешируется.
+    // Параллельные промахи по одному логину ждут одну загрузку; если запись сбросили во время
+    // загрузки, результат отдается только текущему запросу и в кеш не попадает
+    public UserDetailsImpl get(String login, Function<String, UserDetailsImpl> loader) {
+        CompletableFuture<UserDetailsImpl> cached = cache.getIfPresent(login);
+        if (cached != null) {
+            return join(cached);
+        }
+        CompletableFuture<UserDetailsImpl> loading = new CompletableFuture<>();
+        CompletableFuture<UserDetailsImpl> existing = cache.asMap().putIfAbsent(login, loading);
+        if (existing != null) {
+            return join(existing);
+        }
+        try {
+            UserDetailsImpl userDetails = loader.apply(login);
+            loading.complete(userDetails);
+            return userDetails;
+        } catch (RuntimeException e) {
+            // ожидающие получат ту же ошибку, а неуспешная загрузка не остается в кеше
+            loading.completeExceptionally(e);
+            cache.asMap().remove(login, loading);
+            throw e;
+        }
+    }
+
+    public void invalidate(String login) {
+        cache.synchronous().invalidate(login);
+    }
+
+    public void invalidateAll() {
+        cache.synchronous().invalidateAll();
+    }
+
+    // роли пользователя поменялись на другом узле
+    @EventListener
+    public void onUserChanged(UserChanged event) {
+        invalidate(event.login());
+    }
+
+    // уведомления могли быть пропущены, какие записи устарели - неизвестно
+    @EventListener
+    public void onResync(Resync event) {
+        invalidateAll();
+    }
+
+    // сбрасывает запись сразу и еще раз после коммита транзакции,
+    // чтобы параллельный запрос не успел вернуть в кеш старые роли из незакоммиченного состояния
+    public void invalidateAfterCommit(String login) {
+        invalidate(login);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidate(login);
+                }
+            });
+        }
+    }
+
+    public CacheStats stats() {
+        return cache.synchronous().stats();
+    }
+
+    private static UserDetailsImpl join(CompletableFuture<UserDetailsImpl> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
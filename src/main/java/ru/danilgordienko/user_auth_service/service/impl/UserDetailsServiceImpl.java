@@ -4,30 +4,63 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import ru.danilgordienko.user_auth_service.config.AuthMetrics;
+import ru.danilgordienko.user_auth_service.config.AuthMetrics.Outcome;
+import ru.danilgordienko.user_auth_service.config.AuthMetrics.Stage;
 import ru.danilgordienko.user_auth_service.model.User;
 import ru.danilgordienko.user_auth_service.model.UserDetailsImpl;
 import ru.danilgordienko.user_auth_service.repository.UserRepository;
 
+import java.util.Optional;
+
 @Service
 @Slf4j
 @RequiredArgsConstructor
-public class UserDetailsServiceImpl implements UserDetailsService {
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService {
 
     private final UserRepository userRepository;
+    private final UserDetailsCache userDetailsCache;
+    private final AuthMetrics authMetrics;
 
     @Override
     public UserDetails loadUserByUsername(String login) throws UsernameNotFoundException {
-        log.info("Поиск пользователя по логину: {}", login);
-        User user = userRepository.findByLogin(login)
+        return userDetailsCache.get(login, this::loadFromDatabase);
+    }
+
+    private UserDetailsImpl loadFromDatabase(String login) {
+        log.debug("Поиск пользователя по логину: {}", login);
+        long start = System.nanoTime();
+        Optional<User> found = userRepository.findByLogin(login);
+        authMetrics.record(Stage.USER_FIND, found.isPresent() ? Outcome.SUCCESS : Outcome.NOT_FOUND, start);
+        User user = found
                 .orElseThrow(() -> {
                     log.warn("Пользователь '{}' не найден", login);
                     return new UsernameNotFoundException(login + " not found");
                 });
 
-        log.info("Пользователь '{}' найден, возвращаем UserDetails", login);
+        log.debug("Пользователь '{}' найден, возвращаем UserDetails", login);
         return UserDetailsImpl.build(user);
     }
+
+    // DaoAuthenticationProvider вызывает после успешного логина, если сохраненный хеш
+    // посчитан устаревшим алгоритмом или с меньшей стоимостью, чем настроена сейчас
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        userRepository.updatePassword(user.getUsername(), newPassword);
+        userDetailsCache.invalidate(user.getUsername());
+        log.info("Хеш пароля пользователя '{}' пересчитан с текущими параметрами", user.getUsername());
+
+        UserDetailsImpl details = (UserDetailsImpl) user;
+        return new UserDetailsImpl(
+                details.getId(),
+                details.getLogin(),
+                newPassword,
+                details.getEmail(),
+                details.getRoles(),
+                details.getTokenVersion());
+    }
 }
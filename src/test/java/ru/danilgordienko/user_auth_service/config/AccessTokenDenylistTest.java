@@ -0,0 +1,80 @@
+package ru.danilgordienko.user_auth_service.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.danilgordienko.user_auth_service.model.RevokedAccessToken;
+import ru.danilgordienko.user_auth_service.model.VerifiedToken;
+import ru.danilgordienko.user_auth_service.repository.RevokedAccessTokenRepository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AccessTokenDenylistTest {
+
+    private final RevokedAccessTokenRepository repository = mock(RevokedAccessTokenRepository.class);
+
+    @Test
+    void revokedTokenIsRejectedUntilItExpires() {
+        AccessTokenDenylist denylist = denylist();
+        Instant expiresAt = Instant.now().plusSeconds(60);
+
+        denylist.revoke("revoked", expiresAt);
+
+        assertThat(denylist.isRevoked(token("revoked"))).isTrue();
+        assertThat(denylist.isRevoked(token("other"))).isFalse();
+        assertThat(denylist.isRevoked(token(null))).isFalse();
+        verify(repository).insert(eq("revoked"), eq(expiresAt), any());
+
+        denylist.rebuild(expiresAt.plusSeconds(1));
+        assertThat(denylist.size()).isZero();
+        assertThat(denylist.isRevoked(token("revoked"))).isFalse();
+    }
+
+    @Test
+    void restoresRevocationsFromDatabaseOnStartup() {
+        when(repository.findAllByRevokedAtGreaterThanEqualAndExpiresAtAfter(any(), any())).thenReturn(List.of(
+                new RevokedAccessToken("from-db", Instant.now().plusSeconds(60), Instant.now())));
+        AccessTokenDenylist denylist = denylist();
+
+        denylist.load();
+
+        assertThat(denylist.isRevoked(token("from-db"))).isTrue();
+    }
+
+    @Test
+    void bloomFilterHasNoFalseNegativesAndFewFalsePositives() {
+        BloomFilter filter = BloomFilter.create(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("revoked-" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(filter.mightContain("revoked-" + i)).isTrue();
+            if (filter.mightContain(UUID.randomUUID().toString())) {
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives).isLessThan(300);
+    }
+
+    private AccessTokenDenylist denylist() {
+        AccessTokenDenylist denylist = new AccessTokenDenylist(repository, new SimpleMeterRegistry(), 1000, 0.01);
+        ReflectionTestUtils.setField(denylist, "accessExpiration", 800_000);
+        return denylist;
+    }
+
+    private static VerifiedToken token(String tokenId) {
+        return new VerifiedToken("user", 1L, "user@example.com", List.of("ROLE_GUEST"),
+                Instant.now().plusSeconds(60), null, 0, tokenId, null, 0, false);
+    }
+}
@@ -0,0 +1,44 @@
+package ru.danilgordienko.user_auth_service.config;
+
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.MalformedJwtException;
+import io.jsonwebtoken.security.SignatureException;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import ru.danilgordienko.user_auth_service.config.AuthMetrics.Outcome;
+import ru.danilgordienko.user_auth_service.config.AuthMetrics.Stage;
+import ru.danilgordienko.user_auth_service.exception.TokenAlreadyRevokedException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AuthMetricsTest {
+
+    @Test
+    void recordsStageAndOutcomeAsTags() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        AuthMetrics metrics = new AuthMetrics(registry, true);
+
+        metrics.record(Stage.JWT_VERIFY, Outcome.SUCCESS, System.nanoTime());
+        metrics.record(Stage.JWT_VERIFY, Outcome.SUCCESS, System.nanoTime());
+        metrics.record(Stage.JWT_VERIFY, new ExpiredJwtException(null, null, "expired"), System.nanoTime());
+
+        Timer success = registry.get("auth.stage").tags("stage", "jwt.verify", "outcome", "success").timer();
+        Timer expired = registry.get("auth.stage").tags("stage", "jwt.verify", "outcome", "expired").timer();
+        assertThat(success.count()).isEqualTo(2);
+        assertThat(expired.count()).isEqualTo(1);
+        assertThat(registry.find("auth.stage").tag("outcome", "malformed").timer()).isNull();
+    }
+
+    @Test
+    void mapsFailuresToOutcomes() {
+        assertThat(Outcome.of(new MalformedJwtException("bad"))).isEqualTo(Outcome.MALFORMED);
+        assertThat(Outcome.of(new SignatureException("bad"))).isEqualTo(Outcome.INVALID);
+        assertThat(Outcome.of(new BadCredentialsException("bad"))).isEqualTo(Outcome.INVALID);
+        assertThat(Outcome.of(new TokenAlreadyRevokedException("revoked"))).isEqualTo(Outcome.REVOKED);
+        assertThat(Outcome.of(new UsernameNotFoundException("user"))).isEqualTo(Outcome.NOT_FOUND);
+        assertThat(Outcome.of(new IllegalStateException())).isEqualTo(Outcome.ERROR);
+    }
+}
@@ -0,0 +1,98 @@
+package ru.danilgordienko.user_auth_service.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.danilgordienko.user_auth_service.model.InvalidationEvent;
+import ru.danilgordienko.user_auth_service.model.InvalidationEvent.AccessTokenRevoked;
+import ru.danilgordienko.user_auth_service.model.InvalidationEvent.Resync;
+import ru.danilgordienko.user_auth_service.model.InvalidationEvent.UserChanged;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class InvalidationBusTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void eventsSurviveEncoding() {
+        List<InvalidationEvent> events = List.of(
+                new UserChanged("user with spaces\nand newline", 1),
+                new AccessTokenRevoked("2f1c7a4e-0000-4000-8000-000000000000", Instant.ofEpochMilli(1_700_000_000_000L)),
+                new Resync());
+
+        List<String> payloads = InvalidationBus.encode(events);
+
+        assertThat(payloads).hasSize(1);
+        assertThat(InvalidationBus.decode(payloads.get(0))).containsExactlyElementsOf(events);
+    }
+
+    @Test
+    void largeBatchesAreSplitUnderNotifyPayloadLimit() {
+        List<InvalidationEvent> events = IntStream.range(0, 1000)
+                .<InvalidationEvent>mapToObj(i -> new UserChanged("user-" + i, 1))
+                .toList();
+
+        List<String> payloads = InvalidationBus.encode(events);
+
+        assertThat(payloads).hasSizeGreaterThan(1)
+                .allSatisfy(payload -> assertThat(payload.length()).isLessThanOrEqualTo(InvalidationBus.MAX_PAYLOAD));
+        List<InvalidationEvent> decoded = new ArrayList<>();
+        payloads.forEach(payload -> decoded.addAll(InvalidationBus.decode(payload)));
+        assertThat(decoded).containsExactlyElementsOf(events);
+    }
+
+    @Test
+    void unknownEventsAreSkipped() {
+        assertThat(InvalidationBus.decode("X something\nU user\nR broken")).containsExactly(new UserChanged("user", 0));
+    }
+
+    @Test
+    void eventsOfTransactionAreSentOnceBeforeCommit() {
+        InvalidationBus bus = bus();
+        TransactionSynchronizationManager.initSynchronization();
+
+        bus.publish(new UserChanged("user", 1));
+        bus.publish(new UserChanged("user", 1));
+        bus.publish(new UserChanged("admin", 1));
+        verify(jdbcTemplate, never()).execute(anyString(), any(PreparedStatementCallback.class));
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        synchronizations.forEach(synchronization -> synchronization.beforeCommit(false));
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+
+        verify(jdbcTemplate, times(1)).execute(anyString(), any(PreparedStatementCallback.class));
+        assertThat(TransactionSynchronizationManager.getResource(bus)).isNull();
+    }
+
+    private InvalidationBus bus() {
+        InvalidationBus bus = new InvalidationBus(jdbcTemplate, new DataSourceProperties(), event -> { },
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(bus, "enabled", true);
+        return bus;
+    }
+}
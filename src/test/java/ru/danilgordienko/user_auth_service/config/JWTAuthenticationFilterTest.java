@@ -0,0 +1,112 @@
+package ru.danilgordienko.user_auth_service.config;
+
+import io.jsonwebtoken.UnsupportedJwtException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.danilgordienko.user_auth_service.model.UserDetailsImpl;
+import ru.danilgordienko.user_auth_service.model.VerifiedToken;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class JWTAuthenticationFilterTest {
+
+    private final AccessTokenService accessTokenService = mock(AccessTokenService.class);
+    private final UserDetailsService userDetailsService = mock(UserDetailsService.class);
+    private final JWTAuthenticationFilter filter = new JWTAuthenticationFilter(accessTokenService,
+            userDetailsService, new AuthMetrics(new SimpleMeterRegistry(), false));
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void refreshEndpointsAreNotFiltered() throws Exception {
+        for (String path : new String[]{"/api/v1/auth/refresh", "/api/v1/auth/logout"}) {
+            MockHttpServletRequest request = bearerRequest(path);
+            MockFilterChain chain = new MockFilterChain();
+
+            filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+            assertThat(chain.getRequest()).isSameAs(request);
+        }
+        verifyNoInteractions(accessTokenService);
+    }
+
+    @Test
+    void refreshTokenIsRejectedOnProtectedEndpoint() throws Exception {
+        when(accessTokenService.verify(anyString()))
+                .thenThrow(new UnsupportedJwtException("Refresh token cannot be used as an access token"));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(bearerRequest("/api/v1/auth/logout/all"), response, chain);
+
+        assertThat(chain.getRequest()).isNull();
+        assertThat(response.getStatus()).isEqualTo(403);
+    }
+
+    @Test
+    void claimsModeAuthenticatesFromTokenWithoutLoadingUser() throws Exception {
+        ReflectionTestUtils.setField(filter, "authenticationMode", AuthenticationMode.CLAIMS);
+        when(accessTokenService.verify("token")).thenReturn(accessToken(List.of("ROLE_ADMIN")));
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(bearerRequest("/api/v1/users/me"), new MockHttpServletResponse(), chain);
+
+        assertThat(chain.getRequest()).isNotNull();
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        assertThat(authentication.getName()).isEqualTo("user");
+        assertThat(authentication.getAuthorities()).extracting(GrantedAuthority::getAuthority)
+                .containsExactly("ROLE_ADMIN");
+        verifyNoInteractions(userDetailsService);
+    }
+
+    @Test
+    void databaseModeLoadsUserOnEveryRequest() throws Exception {
+        ReflectionTestUtils.setField(filter, "authenticationMode", AuthenticationMode.DATABASE);
+        when(accessTokenService.verify("token")).thenReturn(accessToken(List.of("ROLE_ADMIN")));
+        // роль в БД уже отозвана, а в токене еще осталась
+        when(userDetailsService.loadUserByUsername("user"))
+                .thenReturn(new UserDetailsImpl(1L, "user", "password", "user@example.com", Set.of("GUEST"), 0));
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(bearerRequest("/api/v1/users/me"), new MockHttpServletResponse(), chain);
+
+        assertThat(chain.getRequest()).isNotNull();
+        assertThat(SecurityContextHolder.getContext().getAuthentication().getAuthorities())
+                .extracting(GrantedAuthority::getAuthority)
+                .containsExactly("ROLE_GUEST");
+        verify(userDetailsService).loadUserByUsername("user");
+    }
+
+    private static VerifiedToken accessToken(List<String> roles) {
+        return new VerifiedToken("user", 1L, "user@example.com", roles,
+                Instant.now().plusSeconds(60), null, 0, "jti", null, 0, false);
+    }
+
+    private static MockHttpServletRequest bearerRequest(String path) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+        request.setServletPath(path);
+        request.addHeader("Authorization", "Bearer token");
+        return request;
+    }
+}
@@ -0,0 +1,311 @@
+package ru.danilgordienko.user_auth_service.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.UnsupportedJwtException;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.Jwks;
+import io.jsonwebtoken.security.PublicJwk;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.danilgordienko.user_auth_service.model.UserDetailsImpl;
+import ru.danilgordienko.user_auth_service.model.VerifiedToken;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.KeyPair;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JWTServiceTest {
+
+    private static final String SECRET = "VGhpcyBpcyBhIHZlcnkgc2VjdXJlIHNlY3JldCBrZXkgZm9yIEpXVHMhIQ==";
+    private static final UserDetailsImpl USER =
+            new UserDetailsImpl(1L, "user", "password", "user@example.com", Set.of("GUEST"));
+
+    private static final Duration RETIRE_AFTER = Duration.ofHours(1);
+
+    @TempDir
+    Path keys;
+
+    private int fileVersion;
+
+    @ParameterizedTest
+    @EnumSource(value = SigningAlgorithm.class, names = {"ES256", "EDDSA"})
+    void asymmetricTokensAreVerifiableWithPublishedKey(SigningAlgorithm algorithm) throws Exception {
+        JWTService jwtService = jwtService(algorithm, "", "");
+        String token = jwtService.generateAccessToken(USER);
+
+        JsonNode jwks = new ObjectMapper().readTree(jwtService.jwks().json());
+        JsonNode key = jwks.path("keys").get(0);
+        assertThat(jwks.path("keys")).hasSize(1);
+        assertThat(key.has("d")).isFalse();
+
+        // так проверяет токен сторонний сервис: по kid из заголовка находит ключ в JWKS
+        PublicJwk<?> jwk = (PublicJwk<?>) Jwks.parser().build().parse(key.toString());
+        var claims = Jwts.parser().verifyWith(jwk.toKey()).build().parseSignedClaims(token);
+        assertThat(claims.getHeader().getKeyId()).isEqualTo(jwk.getId());
+        assertThat(claims.getHeader().getAlgorithm()).isEqualTo(key.path("alg").asText());
+        assertThat(claims.getPayload().getSubject()).isEqualTo("user");
+        assertThat(jwtService.verify(token).subject()).isEqualTo("user");
+    }
+
+    @Test
+    void keysAreReadFromPemFilesWithStableKid() throws Exception {
+        KeyPair keyPair = SigningAlgorithm.EDDSA.generateKeyPair();
+        Path privateKey = write("private.pem", "PRIVATE KEY", keyPair.getPrivate().getEncoded());
+        Path publicKey = write("public.pem", "PUBLIC KEY", keyPair.getPublic().getEncoded());
+
+        JWTService first = jwtService(SigningAlgorithm.EDDSA, privateKey.toString(), publicKey.toString());
+        JWTService second = jwtService(SigningAlgorithm.EDDSA, privateKey.toString(), publicKey.toString());
+
+        assertThat(second.verify(first.generateAccessToken(USER)).subject()).isEqualTo("user");
+        assertThat(second.jwks()).isEqualTo(first.jwks());
+    }
+
+    @Test
+    void hmacTokensPublishNoKeysAndAreRejectedByAsymmetricService() {
+        JWTService hmac = jwtService(SigningAlgorithm.HS256, "", "");
+        JWTService es256 = jwtService(SigningAlgorithm.ES256, "", "");
+
+        assertThat(hmac.jwks().json()).isEqualTo("{\"keys\":[]}");
+        assertThatThrownBy(() -> es256.verify(hmac.generateAccessToken(USER)))
+                .isInstanceOf(JwtException.class);
+    }
+
+    @Test
+    void refreshTokenCarriesIdOfItsAccessToken() {
+        JWTService jwtService = jwtService(SigningAlgorithm.HS256, "", "");
+
+        VerifiedToken access = jwtService.verify(jwtService.generateAccessToken(USER, "access-id"));
+        VerifiedToken refresh = jwtService.verify(
+                jwtService.generateRefreshToken(USER, UUID.randomUUID(), 0, "access-id").value());
+
+        assertThat(access.tokenId()).isEqualTo("access-id");
+        assertThat(refresh.accessTokenId()).isEqualTo("access-id");
+    }
+
+    @Test
+    void tokensAreTypedAndRefreshTokensAreNotAcceptedAsAccessTokens() {
+        JWTService jwtService = jwtService(SigningAlgorithm.HS256, "", "");
+        AccessTokenService accessTokenService = new AccessTokenService(jwtService, null, List.of());
+        String access = jwtService.generateAccessToken(USER);
+        String refresh = jwtService.generateRefreshToken(USER, UUID.randomUUID(), 0, "access-id").value();
+
+        assertThat(jwtService.verify(access).refreshToken()).isFalse();
+        assertThat(jwtService.verify(refresh).refreshToken()).isTrue();
+        assertThat(accessTokenService.verify(access).subject()).isEqualTo("user");
+        assertThatThrownBy(() -> accessTokenService.verify(refresh)).isInstanceOf(UnsupportedJwtException.class);
+    }
+
+    // токены в том виде, в каком их выдавала первая версия сервиса: без typ, fid, jti и kid
+    @Test
+    void legacyRefreshTokenIsToldApartFromAccessTokenByLifetime() {
+        JWTService jwtService = jwtService(SigningAlgorithm.HS256, "", "");
+        AccessTokenService accessTokenService = new AccessTokenService(jwtService, null, List.of());
+        String legacyAccess = legacyToken(800_000);
+        String legacyRefresh = legacyToken(80_000_000);
+
+        assertThat(jwtService.verify(legacyAccess).refreshToken()).isFalse();
+        assertThat(jwtService.verify(legacyRefresh).refreshToken()).isTrue();
+        assertThat(accessTokenService.verify(legacyAccess).subject()).isEqualTo("user");
+        assertThatThrownBy(() -> accessTokenService.verify(legacyRefresh))
+                .isInstanceOf(UnsupportedJwtException.class);
+    }
+
+    @Test
+    void accessTokenCarriesTokenVersionOfUser() {
+        JWTService jwtService = jwtService(SigningAlgorithm.HS256, "", "");
+        UserDetailsImpl user = new UserDetailsImpl(1L, "user", "password", "user@example.com", Set.of("GUEST"), 3);
+
+        VerifiedToken access = jwtService.verify(jwtService.generateAccessToken(user));
+
+        assertThat(access.tokenVersion()).isEqualTo(3);
+        assertThat(UserDetailsImpl.fromToken(access).getTokenVersion()).isEqualTo(3);
+    }
+
+    @Test
+    void rotatedKeyKeepsVerifyingUntilRetired() throws Exception {
+        writeFile("2026-01.key", SECRET);
+        JWTService jwtService = keyRingService();
+        String oldToken = jwtService.generateAccessToken(USER);
+
+        writeFile("2026-02.key", Base64.getEncoder().encodeToString(new byte[32]).replace('A', 'B'));
+        Instant rotatedAt = Instant.now();
+        jwtService.reloadKeys(rotatedAt);
+        String newToken = jwtService.generateAccessToken(USER);
+
+        assertThat(kid(newToken)).isEqualTo("2026-02");
+        assertThat(jwtService.verify(oldToken).subject()).isEqualTo("user");
+
+        jwtService.reloadKeys(rotatedAt.plus(RETIRE_AFTER).plusSeconds(1));
+        assertThatThrownBy(() -> jwtService.verify(oldToken)).isInstanceOf(UnsupportedJwtException.class);
+        assertThat(jwtService.verify(newToken).subject()).isEqualTo("user");
+
+        // выведенный ключ не оживает, когда каталог перечитывается из-за других изменений
+        writeFile("2026-03.pem", pem(PemKeys.PUBLIC_KEY, SigningAlgorithm.EDDSA.generateKeyPair().getPublic().getEncoded()));
+        jwtService.reloadKeys(rotatedAt.plus(RETIRE_AFTER).plusSeconds(2));
+        assertThatThrownBy(() -> jwtService.verify(oldToken)).isInstanceOf(UnsupportedJwtException.class);
+    }
+
+    @Test
+    void inactiveKeysArePublishedBeforeTheyStartSigning() throws Exception {
+        KeyPair current = SigningAlgorithm.EDDSA.generateKeyPair();
+        KeyPair next = SigningAlgorithm.ES256.generateKeyPair();
+        writeFile("current.pem", pem(PemKeys.PRIVATE_KEY, current.getPrivate().getEncoded())
+                + pem(PemKeys.PUBLIC_KEY, current.getPublic().getEncoded()));
+        writeFile("next.pem", pem(PemKeys.PRIVATE_KEY, next.getPrivate().getEncoded())
+                + pem(PemKeys.PUBLIC_KEY, next.getPublic().getEncoded()));
+        writeFile(KeyDirectory.ACTIVE_FILE, "current");
+        JWTService jwtService = keyRingService();
+        String etagBefore = jwtService.jwks().etag();
+
+        assertThat(kid(jwtService.generateAccessToken(USER))).isEqualTo("current");
+        assertThat(new ObjectMapper().readTree(jwtService.jwks().json()).findValuesAsText("kid"))
+                .containsExactlyInAnyOrder("current", "next");
+
+        writeFile(KeyDirectory.ACTIVE_FILE, "next");
+        jwtService.reloadKeys(Instant.now());
+        assertThat(kid(jwtService.generateAccessToken(USER))).isEqualTo("next");
+        assertThat(jwtService.jwks().etag()).isEqualTo(etagBefore);
+    }
+
+    @Test
+    void prePublishedKeyIsNotRetiredBeforeActivation() throws Exception {
+        KeyPair current = SigningAlgorithm.EDDSA.generateKeyPair();
+        KeyPair next = SigningAlgorithm.ES256.generateKeyPair();
+        writeFile("current.pem", pem(PemKeys.PRIVATE_KEY, current.getPrivate().getEncoded())
+                + pem(PemKeys.PUBLIC_KEY, current.getPublic().getEncoded()));
+        writeFile("next.pem", pem(PemKeys.PRIVATE_KEY, next.getPrivate().getEncoded())
+                + pem(PemKeys.PUBLIC_KEY, next.getPublic().getEncoded()));
+        writeFile(KeyDirectory.ACTIVE_FILE, "current");
+        JWTService jwtService = keyRingService();
+        Instant publishedAt = Instant.now();
+        String oldToken = jwtService.generateAccessToken(USER);
+
+        // следующий ключ ждет включения дольше retire-after
+        Instant activatedAt = publishedAt.plus(RETIRE_AFTER).plusSeconds(60);
+        jwtService.reloadKeys(activatedAt);
+        assertThat(new ObjectMapper().readTree(jwtService.jwks().json()).findValuesAsText("kid"))
+                .containsExactlyInAnyOrder("current", "next");
+
+        writeFile(KeyDirectory.ACTIVE_FILE, "next");
+        jwtService.reloadKeys(activatedAt);
+        String newToken = jwtService.generateAccessToken(USER);
+        assertThat(kid(newToken)).isEqualTo("next");
+        assertThat(jwtService.verify(newToken).subject()).isEqualTo("user");
+        assertThat(jwtService.verify(oldToken).subject()).isEqualTo("user");
+
+        // прежний активный ключ выводится через retire-after после смены
+        jwtService.reloadKeys(activatedAt.plus(RETIRE_AFTER).plusSeconds(1));
+        assertThatThrownBy(() -> jwtService.verify(oldToken)).isInstanceOf(UnsupportedJwtException.class);
+        assertThat(jwtService.verify(newToken).subject()).isEqualTo("user");
+    }
+
+    @Test
+    void legacyTokensWithoutKidAreAcceptedAfterSwitchingToKeyDirectory() throws Exception {
+        String legacyToken = jwtService(SigningAlgorithm.HS256, "", "").generateAccessToken(USER);
+        KeyPair keyPair = SigningAlgorithm.ES256.generateKeyPair();
+        writeFile("2026-01.pem", pem(PemKeys.PRIVATE_KEY, keyPair.getPrivate().getEncoded())
+                + pem(PemKeys.PUBLIC_KEY, keyPair.getPublic().getEncoded()));
+
+        JWTService jwtService = keyRingService();
+
+        assertThat(kid(legacyToken)).isNull();
+        assertThat(jwtService.verify(legacyToken).subject()).isEqualTo("user");
+        assertThat(kid(jwtService.generateAccessToken(USER))).isEqualTo("2026-01");
+    }
+
+    @Test
+    void brokenKeyFileKeepsCurrentKeyRing() throws Exception {
+        writeFile("2026-01.key", SECRET);
+        JWTService jwtService = keyRingService();
+
+        writeFile("2026-02.pem", "not a key");
+        writeFile(KeyDirectory.ACTIVE_FILE, "2026-02");
+        jwtService.reloadKeys(Instant.now());
+
+        assertThat(kid(jwtService.generateAccessToken(USER))).isEqualTo("2026-01");
+    }
+
+    private JWTService keyRingService() {
+        JWTService jwtService = newJwtService(SigningAlgorithm.HS256, "", "", keys.toString());
+        jwtService.init();
+        return jwtService;
+    }
+
+    private static String legacyToken(long lifetimeMillis) {
+        long now = System.currentTimeMillis();
+        return Jwts.builder()
+                .subject("user")
+                .issuedAt(new Date(now))
+                .expiration(new Date(now + lifetimeMillis))
+                .claim("id", 1L)
+                .claim("email", "user@example.com")
+                .claim("roles", List.of("ROLE_GUEST"))
+                .signWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET)))
+                .compact();
+    }
+
+    private static String kid(String token) {
+        String header = new String(Base64.getUrlDecoder().decode(token.substring(0, token.indexOf('.'))));
+        try {
+            return new ObjectMapper().readTree(header).path("kid").textValue();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // каждая запись сдвигает время изменения, чтобы опрос каталога гарантированно увидел новую версию
+    private void writeFile(String name, String content) throws Exception {
+        Path file = Files.writeString(keys.resolve(name), content);
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().plusSeconds(++fileVersion)));
+    }
+
+    private Path write(String name, String type, byte[] der) throws Exception {
+        return Files.writeString(keys.resolve(name), pem(type, der));
+    }
+
+    private static String pem(String type, byte[] der) {
+        return "-----BEGIN " + type + "-----\n"
+                + Base64.getMimeEncoder(64, "\n".getBytes()).encodeToString(der)
+                + "\n-----END " + type + "-----\n";
+    }
+
+    private static JWTService jwtService(SigningAlgorithm algorithm, String privateKey, String publicKey) {
+        JWTService jwtService = newJwtService(algorithm, privateKey, publicKey, "");
+        jwtService.init();
+        return jwtService;
+    }
+
+    private static JWTService newJwtService(SigningAlgorithm algorithm, String privateKey, String publicKey,
+                                            String keyDir) {
+        JWTService jwtService = new JWTService(new AuthMetrics(new SimpleMeterRegistry(), false));
+        ReflectionTestUtils.setField(jwtService, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtService, "accessExpiration", 800_000);
+        ReflectionTestUtils.setField(jwtService, "refreshExpiration", 80_000_000);
+        ReflectionTestUtils.setField(jwtService, "signingAlgorithm", algorithm);
+        ReflectionTestUtils.setField(jwtService, "privateKeyPath", privateKey);
+        ReflectionTestUtils.setField(jwtService, "publicKeyPath", publicKey);
+        ReflectionTestUtils.setField(jwtService, "keyId", "");
+        ReflectionTestUtils.setField(jwtService, "keyDir", keyDir);
+        ReflectionTestUtils.setField(jwtService, "retireAfter", RETIRE_AFTER);
+        return jwtService;
+    }
+}
@@ -0,0 +1,88 @@
+package ru.danilgordienko.user_auth_service.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.danilgordienko.user_auth_service.exception.TokenNotFoundException;
+import ru.danilgordienko.user_auth_service.model.AccessToken;
+import ru.danilgordienko.user_auth_service.model.User;
+import ru.danilgordienko.user_auth_service.model.UserDetailsImpl;
+import ru.danilgordienko.user_auth_service.model.VerifiedToken;
+import ru.danilgordienko.user_auth_service.repository.AccessTokenRepository;
+import ru.danilgordienko.user_auth_service.repository.UserRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OpaqueTokenServiceTest {
+
+    private static final UserDetailsImpl USER =
+            new UserDetailsImpl(1L, "user", "password", "user@example.com", Set.of("GUEST"));
+
+    private final AccessTokenRepository accessTokenRepository = mock(AccessTokenRepository.class);
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private OpaqueTokenService opaqueTokenService;
+
+    @BeforeEach
+    void setUp() {
+        opaqueTokenService = new OpaqueTokenService(accessTokenRepository, userRepository,
+                new AuthMetrics(new SimpleMeterRegistry(), false), new SimpleMeterRegistry(),
+                100, Duration.ofMinutes(1), Duration.ofSeconds(10));
+        ReflectionTestUtils.setField(opaqueTokenService, "accessExpiration", 800_000);
+        when(userRepository.getReferenceById(1L)).thenReturn(User.builder().id(1L).build());
+    }
+
+    @Test
+    void issuedTokenIsShortAndResolvedFromCache() {
+        String token = opaqueTokenService.issue(USER, "token-id");
+
+        VerifiedToken verified = opaqueTokenService.introspect(token);
+
+        assertThat(token).startsWith(OpaqueTokenService.PREFIX).hasSize(46);
+        assertThat(verified.subject()).isEqualTo("user");
+        assertThat(verified.roles()).containsExactly("ROLE_GUEST");
+        verify(accessTokenRepository).save(any());
+        verify(accessTokenRepository, times(0)).findByTokenHash(any());
+    }
+
+    @Test
+    void cacheMissFallsBackToDatabase() {
+        String token = OpaqueTokenService.PREFIX + "issued-on-another-node";
+        when(accessTokenRepository.findByTokenHash(any())).thenReturn(Optional.of(AccessToken.builder()
+                .user(User.builder().id(2L).build())
+                .login("other")
+                .email("other@example.com")
+                .roles("ROLE_GUEST,ROLE_ADMIN")
+                .expiresAt(Instant.now().plusSeconds(60))
+                .build()));
+
+        opaqueTokenService.introspect(token);
+        VerifiedToken verified = opaqueTokenService.introspect(token);
+
+        assertThat(verified.id()).isEqualTo(2L);
+        assertThat(verified.roles()).containsExactly("ROLE_GUEST", "ROLE_ADMIN");
+        verify(accessTokenRepository, times(1)).findByTokenHash(any());
+    }
+
+    @Test
+    void unknownTokenIsRejectedAndNegativelyCached() {
+        String token = OpaqueTokenService.PREFIX + "unknown";
+        when(accessTokenRepository.findByTokenHash(any())).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> opaqueTokenService.introspect(token)).isInstanceOf(TokenNotFoundException.class);
+        assertThatThrownBy(() -> opaqueTokenService.introspect(token)).isInstanceOf(TokenNotFoundException.class);
+
+        verify(accessTokenRepository, times(1)).findByTokenHash(any());
+    }
+}
@@ -0,0 +1,65 @@
+package ru.danilgordienko.user_auth_service.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PasswordEncoderFactoryTest {
+
+    @Test
+    void legacyHashesStillMatchAndAreUpgraded() {
+        PasswordEncoder encoder = factory("bcrypt", 4).create();
+        String legacyHash = new BCryptPasswordEncoder(4).encode("password");
+
+        assertThat(encoder.matches("password", legacyHash)).isTrue();
+        assertThat(encoder.upgradeEncoding(legacyHash)).isTrue();
+    }
+
+    @Test
+    void hashesWithLowerStrengthAreUpgraded() {
+        String weakHash = factory("bcrypt", 4).create().encode("password");
+        PasswordEncoder encoder = factory("bcrypt", 5).create();
+
+        assertThat(weakHash).startsWith("{bcrypt}");
+        assertThat(encoder.matches("password", weakHash)).isTrue();
+        assertThat(encoder.upgradeEncoding(weakHash)).isTrue();
+        assertThat(encoder.upgradeEncoding(encoder.encode("password"))).isFalse();
+    }
+
+    @Test
+    void switchingAlgorithmUpgradesExistingHashes() {
+        String bcryptHash = factory("bcrypt", 4).create().encode("password");
+        PasswordEncoder encoder = factory("argon2", 4).create();
+
+        assertThat(encoder.matches("password", bcryptHash)).isTrue();
+        assertThat(encoder.upgradeEncoding(bcryptHash)).isTrue();
+        assertThat(encoder.encode("password")).startsWith("{argon2}");
+    }
+
+    @Test
+    void calibrationNeverLowersConfiguredCost() {
+        PasswordEncoderFactory factory = factory("bcrypt", 5);
+        // недостижимая цель: любая стоимость выше настроенной медленнее
+        ReflectionTestUtils.setField(factory, "targetHashTime", Duration.ofNanos(1));
+
+        factory.create();
+
+        assertThat(ReflectionTestUtils.getField(factory, "bcryptStrength")).isEqualTo(5);
+    }
+
+    private static PasswordEncoderFactory factory(String algorithm, int bcryptStrength) {
+        PasswordEncoderFactory factory = new PasswordEncoderFactory();
+        ReflectionTestUtils.setField(factory, "algorithm", algorithm);
+        ReflectionTestUtils.setField(factory, "bcryptStrength", bcryptStrength);
+        ReflectionTestUtils.setField(factory, "argon2Memory", 1024);
+        ReflectionTestUtils.setField(factory, "argon2Iterations", 1);
+        ReflectionTestUtils.setField(factory, "argon2Parallelism", 1);
+        ReflectionTestUtils.setField(factory, "targetHashTime", Duration.ZERO);
+        return factory;
+    }
+}
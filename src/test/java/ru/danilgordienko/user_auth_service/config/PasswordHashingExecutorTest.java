@@ -0,0 +1,115 @@
+package ru.danilgordienko.user_auth_service.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import ru.danilgordienko.user_auth_service.exception.PasswordHashingOverloadedException;
+import ru.danilgordienko.user_auth_service.exception.handler.GlobalExceptionHandler;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PasswordHashingExecutorTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private PasswordHashingExecutor executor;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        executor.destroy();
+    }
+
+    @Test
+    void fullQueueIsRejectedImmediately() throws Exception {
+        executor = new PasswordHashingExecutor(1, 1, Duration.ofSeconds(5), meterRegistry);
+        CountDownLatch started = new CountDownLatch(1);
+
+        // первая задача занимает единственный поток, вторая встает в очередь
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> executor.execute(() -> {
+            started.countDown();
+            return await("running");
+        }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> executor.execute(() -> "queued"));
+        awaitQueueSize(1);
+
+        assertThatThrownBy(() -> executor.execute(() -> "rejected"))
+                .isInstanceOf(PasswordHashingOverloadedException.class)
+                .hasMessageContaining("retry later");
+        assertThat(meterRegistry.get("auth.password.hashing.rejected").counter().count()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(running.get(5, TimeUnit.SECONDS)).isEqualTo("running");
+        assertThat(queued.get(5, TimeUnit.SECONDS)).isEqualTo("queued");
+    }
+
+    @Test
+    void slowHashingTimesOutAndIsCancelled() throws Exception {
+        executor = new PasswordHashingExecutor(1, 1, Duration.ofMillis(100), meterRegistry);
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        assertThatThrownBy(() -> executor.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return "late";
+        }))
+                .isInstanceOf(PasswordHashingOverloadedException.class)
+                .hasMessageContaining("timed out");
+        // поток пула освобождается, а не дохеширует ответ, который уже никто не ждет
+        assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(executor.execute(() -> "next")).isEqualTo("next");
+    }
+
+    @Test
+    void taskExceptionIsRethrownAsIs() {
+        executor = new PasswordHashingExecutor(1, 1, Duration.ofSeconds(5), meterRegistry);
+        IllegalArgumentException failure = new IllegalArgumentException("bad hash");
+
+        assertThatThrownBy(() -> executor.execute(() -> {
+            throw failure;
+        })).isSameAs(failure);
+    }
+
+    @Test
+    void overloadIsReportedAsServiceUnavailableWithRetryAfter() {
+        executor = new PasswordHashingExecutor(1, 1, Duration.ofSeconds(5), meterRegistry);
+
+        ResponseEntity<String> response = new GlobalExceptionHandler()
+                .handlePasswordHashingOverloaded(new PasswordHashingOverloadedException("overloaded"));
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+        assertThat(response.getBody()).isEqualTo("overloaded");
+    }
+
+    private String await(String result) {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return result;
+    }
+
+    private void awaitQueueSize(int size) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("auth.password.hashing.queue").gauge().value() < size) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package ru.danilgordienko.user_auth_service.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.danilgordienko.user_auth_service.model.User;
+import ru.danilgordienko.user_auth_service.repository.RefreshTokenRepository;
+import ru.danilgordienko.user_auth_service.repository.UserRepository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// раскатка expand-релиза: узлы прошлой версии читают и пишут только столбец token
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+class RefreshTokenStorageMigrationTest {
+
+    private static final String TOKEN = "header.payload.signature";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private RefreshTokenStorageMigration migration;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("alter table refresh_tokens add column if not exists token varchar(1024)");
+        migration = new RefreshTokenStorageMigration(jdbcTemplate);
+        ReflectionTestUtils.setField(migration, "legacyColumn", true);
+        ReflectionTestUtils.setField(migration, "writeLegacyColumn", true);
+        user = userRepository.saveAndFlush(User.builder()
+                .login("user")
+                .email("user@example.com")
+                .password("password")
+                .roles(Set.of("GUEST"))
+                .build());
+    }
+
+    @Test
+    void rowWrittenByOldNodeIsFoundByTokenAfterHashMiss() {
+        jdbcTemplate.update("insert into refresh_tokens (token, user_id, revoked, expires_at, generation) " +
+                "values (?, ?, false, ?, 0)", TOKEN, user.getId(), Timestamp.from(Instant.now().plusSeconds(60)));
+        byte[] tokenHash = TokenDigest.sha256(TOKEN);
+
+        assertThat(refreshTokenRepository.revokeByTokenHash(tokenHash)).isZero();
+        assertThat(migration.claimLegacyToken(tokenHash, TOKEN)).isTrue();
+        assertThat(refreshTokenRepository.revokeByTokenHash(tokenHash)).isEqualTo(1);
+        // повторно строка уже не забирается, отозванный токен остается отозванным
+        assertThat(migration.claimLegacyToken(tokenHash, TOKEN)).isFalse();
+    }
+
+    @Test
+    void rowWrittenByNewNodeIsReadableByOldNode() {
+        byte[] tokenHash = TokenDigest.sha256(TOKEN);
+        jdbcTemplate.update("insert into refresh_tokens (token_hash, user_id, revoked, expires_at, generation) " +
+                "values (?, ?, false, ?, 0)", tokenHash, user.getId(), Timestamp.from(Instant.now().plusSeconds(60)));
+
+        migration.writeLegacyToken(tokenHash, TOKEN);
+
+        // так отзывает токен узел прошлой версии
+        assertThat(jdbcTemplate.update("update refresh_tokens set revoked = true where token = ?", TOKEN))
+                .isEqualTo(1);
+    }
+
+    @Test
+    void legacyColumnIsNotWrittenOnceDisabled() {
+        ReflectionTestUtils.setField(migration, "writeLegacyColumn", false);
+        byte[] tokenHash = TokenDigest.sha256(TOKEN);
+        jdbcTemplate.update("insert into refresh_tokens (token_hash, user_id, revoked, expires_at, generation) " +
+                "values (?, ?, false, ?, 0)", tokenHash, user.getId(), Timestamp.from(Instant.now().plusSeconds(60)));
+
+        migration.writeLegacyToken(tokenHash, TOKEN);
+
+        assertThat(jdbcTemplate.queryForObject("select count(*) from refresh_tokens where token is not null",
+                Integer.class)).isZero();
+    }
+}
@@ -0,0 +1,128 @@
+package ru.danilgordienko.user_auth_service.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.danilgordienko.user_auth_service.exception.UserNotFoundException;
+import ru.danilgordienko.user_auth_service.model.InvalidationEvent.UserChanged;
+import ru.danilgordienko.user_auth_service.model.VerifiedToken;
+import ru.danilgordienko.user_auth_service.repository.UserRepository;
+import ru.danilgordienko.user_auth_service.repository.UserRepository.TokenVersionView;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TokenVersionsTest {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final TokenVersions tokenVersions = new TokenVersions(userRepository, new SimpleMeterRegistry());
+
+    @BeforeEach
+    void setUp() {
+        // 15 минут
+        ReflectionTestUtils.setField(tokenVersions, "accessExpiration", 900_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void tokensIssuedBeforeBumpAreRejectedAfterCommit() {
+        when(userRepository.incrementTokenVersion(eq("user"), any())).thenReturn(1);
+        when(userRepository.findTokenVersionByLogin("user")).thenReturn(Optional.of(1));
+        TransactionSynchronizationManager.initSynchronization();
+
+        assertThat(tokenVersions.bump("user")).isEqualTo(1);
+        assertThat(tokenVersions.isRevoked(token("user", 0))).isFalse();
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        assertThat(tokenVersions.isRevoked(token("user", 0))).isTrue();
+        assertThat(tokenVersions.isRevoked(token("user", 1))).isFalse();
+        assertThat(tokenVersions.isRevoked(token("other", 0))).isFalse();
+    }
+
+    @Test
+    void bumpOfUnknownUserFails() {
+        when(userRepository.incrementTokenVersion(eq("ghost"), any())).thenReturn(0);
+
+        assertThatThrownBy(() -> tokenVersions.bump("ghost")).isInstanceOf(UserNotFoundException.class);
+    }
+
+    @Test
+    void versionsFromEventsAndDatabaseOnlyGrow() {
+        when(userRepository.findTokenVersionsChangedSince(any())).thenReturn(List.of(view("user", 2, Instant.now())));
+        tokenVersions.load();
+
+        tokenVersions.onUserChanged(new UserChanged("user", 5));
+        tokenVersions.onUserChanged(new UserChanged("user", 3));
+        tokenVersions.sync();
+
+        assertThat(tokenVersions.isRevoked(token("user", 4))).isTrue();
+        assertThat(tokenVersions.isRevoked(token("user", 5))).isFalse();
+    }
+
+    @Test
+    void syncLoadsRecentChangesAndForgetsOldOnes() {
+        Instant start = Instant.now();
+        when(userRepository.findTokenVersionsChangedSince(any())).thenReturn(List.of(
+                view("recent", 1, start.minusSeconds(60)),
+                view("old", 1, start.minusSeconds(3_600))));
+        tokenVersions.load();
+
+        assertThat(tokenVersions.isRevoked(token("recent", 0))).isTrue();
+        // токены, выданные до смены час назад, истекли бы и без отзыва
+        assertThat(tokenVersions.isRevoked(token("old", 0))).isFalse();
+
+        tokenVersions.sync();
+
+        ArgumentCaptor<Instant> since = ArgumentCaptor.forClass(Instant.class);
+        verify(userRepository, times(2)).findTokenVersionsChangedSince(since.capture());
+        // при старте - окно access-expiration, дальше - только с прошлой синхронизации
+        assertThat(since.getAllValues().get(0)).isBefore(start.minusSeconds(899));
+        assertThat(since.getAllValues().get(1)).isAfter(start.minusSeconds(120));
+    }
+
+    private static VerifiedToken token(String login, int tokenVersion) {
+        return new VerifiedToken(login, 1L, login + "@example.com", List.of("ROLE_GUEST"),
+                Instant.now().plusSeconds(60), null, 0, null, null, tokenVersion, false);
+    }
+
+    private static TokenVersionView view(String login, int tokenVersion, Instant changedAt) {
+        return new TokenVersionView() {
+            @Override
+            public String getLogin() {
+                return login;
+            }
+
+            @Override
+            public int getTokenVersion() {
+                return tokenVersion;
+            }
+
+            @Override
+            public Instant getChangedAt() {
+                return changedAt;
+            }
+        };
+    }
+}
@@ -0,0 +1,57 @@
+package ru.danilgordienko.user_auth_service.config.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.spi.FilterReply;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimitingTurboFilterTest {
+
+    private final LoggerContext context = new LoggerContext();
+
+    @Test
+    void floodFromOneLoggerDoesNotSuppressAnother() {
+        RateLimitingTurboFilter filter = filter();
+        Logger tokens = logger("app.JWTAuthenticationFilter");
+        Logger throttle = logger("app.LoginThrottle");
+
+        int allowed = 0;
+        for (int i = 0; i < 100; i++) {
+            allowed += filter.decide(null, tokens, Level.WARN, "bad token", null, null) == FilterReply.NEUTRAL ? 1 : 0;
+        }
+
+        // лимит 2 в секунду, за время цикла секунда могла смениться один раз
+        assertThat(allowed).isBetween(2, 4);
+        assertThat(filter.decide(null, throttle, Level.WARN, "throttled", null, null)).isEqualTo(FilterReply.NEUTRAL);
+    }
+
+    @Test
+    void errorsAndUnlistedLoggersAreNeverLimited() {
+        RateLimitingTurboFilter filter = filter();
+        Logger tokens = logger("app.JWTAuthenticationFilter");
+        Logger other = logger("app.Other");
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(filter.decide(null, tokens, Level.ERROR, "error", null, null)).isEqualTo(FilterReply.NEUTRAL);
+            assertThat(filter.decide(null, other, Level.WARN, "warn", null, null)).isEqualTo(FilterReply.NEUTRAL);
+        }
+    }
+
+    private RateLimitingTurboFilter filter() {
+        RateLimitingTurboFilter filter = new RateLimitingTurboFilter();
+        filter.addLogger("app.JWTAuthenticationFilter");
+        filter.addLogger("app.LoginThrottle");
+        filter.setMaxPerSecond(2);
+        filter.start();
+        return filter;
+    }
+
+    private Logger logger(String name) {
+        Logger logger = context.getLogger(name);
+        logger.setLevel(Level.INFO);
+        return logger;
+    }
+}
@@ -0,0 +1,130 @@
+package ru.danilgordienko.user_auth_service.repository;
+
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import ru.danilgordienko.user_auth_service.model.RefreshToken;
+import ru.danilgordienko.user_auth_service.model.User;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class RefreshTokenRepositoryTest {
+
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private User user;
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.save(User.builder()
+                .login("user")
+                .email("user@example.com")
+                .password("password")
+                .roles(Set.of("GUEST"))
+                .build());
+        for (int i = 0; i < 5; i++) {
+            saveToken(i);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void deleteAllByUserIssuesSingleStatement() {
+        int deleted = refreshTokenRepository.deleteAllByUser(user);
+
+        assertThat(deleted).isEqualTo(5);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(refreshTokenRepository.count()).isZero();
+    }
+
+    @Test
+    void deleteAllExceptNewestKeepsNewestTokensInSingleStatement() {
+        List<Long> ids = refreshTokenRepository.findAll().stream().map(RefreshToken::getId).sorted().toList();
+        statistics.clear();
+
+        int deleted = refreshTokenRepository.deleteAllExceptNewest(user.getId(), 2);
+
+        assertThat(deleted).isEqualTo(3);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(refreshTokenRepository.findAll())
+                .extracting(RefreshToken::getId)
+                .containsExactlyInAnyOrderElementsOf(ids.subList(3, 5));
+    }
+
+    @Test
+    void revokeByTokenHashSucceedsOnlyOnceInSingleStatement() {
+        byte[] tokenHash = tokenHash(0);
+
+        assertThat(refreshTokenRepository.revokeByTokenHash(tokenHash)).isEqualTo(1);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(refreshTokenRepository.revokeByTokenHash(tokenHash)).isZero();
+        assertThat(isActive(tokenHash)).isFalse();
+    }
+
+    @Test
+    void revokeFamilyRevokesWholeRotationChainInSingleStatement() {
+        UUID familyId = UUID.randomUUID();
+        saveToken(10, familyId, 0);
+        saveToken(11, familyId, 1);
+        statistics.clear();
+
+        int revoked = refreshTokenRepository.revokeFamily(familyId);
+
+        assertThat(revoked).isEqualTo(2);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(isActive(tokenHash(11))).isFalse();
+        assertThat(isActive(tokenHash(0))).isTrue();
+    }
+
+    private boolean isActive(byte[] tokenHash) {
+        return entityManager.createQuery(
+                        "select count(t) from RefreshToken t where t.tokenHash = :tokenHash and t.revoked = false",
+                        Long.class)
+                .setParameter("tokenHash", tokenHash)
+                .getSingleResult() > 0;
+    }
+
+    private void saveToken(int seed) {
+        saveToken(seed, UUID.randomUUID(), 0);
+    }
+
+    private void saveToken(int seed, UUID familyId, int generation) {
+        refreshTokenRepository.save(RefreshToken.builder()
+                .tokenHash(tokenHash(seed))
+                .user(user)
+                .expiresAt(Instant.now().plusSeconds(3600))
+                .familyId(familyId)
+                .generation(generation)
+                .build());
+    }
+
+    private static byte[] tokenHash(int seed) {
+        return ByteBuffer.allocate(32).putInt(seed).array();
+    }
+}
@@ -0,0 +1,82 @@
+package ru.danilgordienko.user_auth_service.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.danilgordienko.user_auth_service.model.User;
+import ru.danilgordienko.user_auth_service.repository.UserBatchRepository.NewUser;
+import ru.danilgordienko.user_auth_service.repository.UserBatchRepository.RoleGrant;
+import ru.danilgordienko.user_auth_service.repository.UserRepository.TokenVersionView;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// H2 в режиме PostgreSQL: пакетные вставки используют ON CONFLICT DO NOTHING
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:bulk;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect"})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(UserBatchRepository.class)
+class UserBatchRepositoryTest {
+
+    @Autowired
+    private UserBatchRepository userBatchRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User existing;
+
+    @BeforeEach
+    void setUp() {
+        existing = userRepository.saveAndFlush(User.builder()
+                .login("existing")
+                .email("existing@example.com")
+                .password("password")
+                .roles(Set.of("GUEST"))
+                .build());
+    }
+
+    @Test
+    void existingAndRepeatedLoginsAreNotInserted() {
+        int[] inserted = userBatchRepository.insertUsers(List.of(
+                new NewUser("alice", "alice@example.com", "{bcrypt}hash"),
+                new NewUser("existing", "other@example.com", "{bcrypt}hash"),
+                new NewUser("alice", "alice2@example.com", "{bcrypt}hash")));
+
+        assertThat(inserted).containsExactly(1, 0, 0);
+        assertThat(userBatchRepository.findIdsByLogin(List.of("alice", "existing", "missing")))
+                .containsOnlyKeys("alice", "existing");
+    }
+
+    @Test
+    void existingRolesAreSkippedAndVersionsBumpedInOneStatement() {
+        int[] inserted = userBatchRepository.insertRoles(List.of(
+                new RoleGrant(existing.getId(), "GUEST"),
+                new RoleGrant(existing.getId(), "PREMIUM_USER")));
+        Instant changedAt = Instant.parse("2026-01-01T00:00:00Z");
+        userBatchRepository.incrementTokenVersions(List.of(existing.getId()), changedAt);
+
+        assertThat(inserted).containsExactly(0, 1);
+        assertThat(jdbcTemplate.queryForList("select role from user_roles where user_id = ?", String.class,
+                existing.getId())).containsExactlyInAnyOrder("GUEST", "PREMIUM_USER");
+        assertThat(userBatchRepository.findTokenVersions(List.of(existing.getId())))
+                .isEqualTo(Map.of("existing", 1));
+        assertThat(userRepository.findTokenVersionsChangedSince(changedAt))
+                .extracting(TokenVersionView::getLogin).containsExactly("existing");
+    }
+}
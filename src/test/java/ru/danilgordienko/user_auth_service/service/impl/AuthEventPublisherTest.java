@@ -0,0 +1,74 @@
+package ru.danilgordienko.user_auth_service.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.danilgordienko.user_auth_service.model.AuthEvent;
+import ru.danilgordienko.user_auth_service.model.AuthEventType;
+import ru.danilgordienko.user_auth_service.repository.AuthEventBatchRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class AuthEventPublisherTest {
+
+    private final List<List<String>> batches = new ArrayList<>();
+
+    @Test
+    void writesQueuedEventsInBatches() {
+        AuthEventPublisher publisher = publisher(10, 2, AuthEventPublisher.OverflowPolicy.DROP_NEWEST);
+        for (int i = 0; i < 5; i++) {
+            publisher.publish(AuthEventType.LOGIN_SUCCESS, "user" + i);
+        }
+
+        publisher.flush();
+
+        assertThat(batches).containsExactly(
+                List.of("user0", "user1"), List.of("user2", "user3"), List.of("user4"));
+    }
+
+    @Test
+    void dropNewestKeepsEarliestEvents() {
+        AuthEventPublisher publisher = publisher(2, 10, AuthEventPublisher.OverflowPolicy.DROP_NEWEST);
+        publisher.publish(AuthEventType.LOGIN_SUCCESS, "first");
+        publisher.publish(AuthEventType.LOGIN_SUCCESS, "second");
+        publisher.publish(AuthEventType.LOGIN_SUCCESS, "third");
+
+        publisher.flush();
+
+        assertThat(batches).containsExactly(List.of("first", "second"));
+    }
+
+    @Test
+    void dropOldestKeepsLatestEvents() {
+        AuthEventPublisher publisher = publisher(2, 10, AuthEventPublisher.OverflowPolicy.DROP_OLDEST);
+        publisher.publish(AuthEventType.LOGIN_SUCCESS, "first");
+        publisher.publish(AuthEventType.LOGIN_SUCCESS, "second");
+        publisher.publish(AuthEventType.LOGIN_SUCCESS, "third");
+
+        publisher.flush();
+
+        assertThat(batches).containsExactly(List.of("second", "third"));
+    }
+
+    private AuthEventPublisher publisher(int capacity, int batchSize, AuthEventPublisher.OverflowPolicy policy) {
+        AuthEventBatchRepository repository = mock(AuthEventBatchRepository.class);
+        doAnswer(invocation -> {
+            List<AuthEvent> events = invocation.getArgument(0);
+            batches.add(events.stream().map(AuthEvent::getLogin).toList());
+            return null;
+        }).when(repository).insertAll(anyList());
+
+        AuthEventPublisher publisher = new AuthEventPublisher(repository, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(publisher, "enabled", true);
+        ReflectionTestUtils.setField(publisher, "capacity", capacity);
+        ReflectionTestUtils.setField(publisher, "batchSize", batchSize);
+        ReflectionTestUtils.setField(publisher, "overflowPolicy", policy);
+        return publisher;
+    }
+}
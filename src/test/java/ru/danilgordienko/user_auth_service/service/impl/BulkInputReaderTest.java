@@ -0,0 +1,74 @@
+package ru.danilgordienko.user_auth_service.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import ru.danilgordienko.user_auth_service.dto.BulkFormat;
+import ru.danilgordienko.user_auth_service.service.impl.BulkInputReader.BulkRow;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BulkInputReaderTest {
+
+    @Test
+    void csvColumnsAreTakenFromHeader() throws IOException {
+        List<BulkRow> rows = read(BulkFormat.CSV, 100, """
+                email,login,password,roles\r
+                "alice@example.com",alice,"pa,ss""word",GUEST;PREMIUM_USER\r
+                \r
+                bob@example.com,bob,secret1,
+                """);
+
+        assertThat(rows).hasSize(2);
+        assertThat(rows.get(0).line()).isEqualTo(2);
+        assertThat(rows.get(0).user().email()).isEqualTo("alice@example.com");
+        assertThat(rows.get(0).user().password()).isEqualTo("pa,ss\"word");
+        assertThat(rows.get(0).user().roles()).containsExactly("GUEST", "PREMIUM_USER");
+        assertThat(rows.get(1).line()).isEqualTo(4);
+        assertThat(rows.get(1).login()).isEqualTo("bob");
+        assertThat(rows.get(1).user().roles()).isNull();
+    }
+
+    @Test
+    void malformedLinesAreReportedAndReadingContinues() throws IOException {
+        String tooLong = "{\"login\":\"" + "x".repeat(200) + "\"}";
+        List<BulkRow> rows = read(BulkFormat.NDJSON, 100, """
+                {"login":"alice","roles":["ADMIN"]}
+                {"login":
+                null
+                %s
+                {"login":"bob"}
+                """.formatted(tooLong));
+
+        assertThat(rows).extracting(BulkRow::login).containsExactly("alice", null, null, null, "bob");
+        assertThat(rows.get(1).error()).startsWith("Malformed JSON");
+        assertThat(rows.get(2).error()).isEqualTo("Expected a JSON object");
+        assertThat(rows.get(3).error()).isEqualTo("Line is longer than 100 characters");
+        assertThat(rows.get(4).line()).isEqualTo(5);
+    }
+
+    @Test
+    void csvWithoutLoginColumnIsRejected() {
+        assertThatThrownBy(() -> read(BulkFormat.CSV, 100, "email\nalice@example.com\n"))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    private static List<BulkRow> read(BulkFormat format, int maxLineLength, String body) throws IOException {
+        List<BulkRow> rows = new ArrayList<>();
+        try (BulkInputReader reader = new BulkInputReader(
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), format, new ObjectMapper(),
+                maxLineLength)) {
+            BulkRow row;
+            while ((row = reader.next()) != null) {
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+}
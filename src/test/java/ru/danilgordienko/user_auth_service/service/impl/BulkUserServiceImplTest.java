@@ -0,0 +1,94 @@
+package ru.danilgordienko.user_auth_service.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.danilgordienko.user_auth_service.dto.BulkFormat;
+import ru.danilgordienko.user_auth_service.dto.BulkResult;
+import ru.danilgordienko.user_auth_service.service.impl.BulkInputReader.BulkRow;
+import ru.danilgordienko.user_auth_service.service.impl.BulkUserWriter.ChunkResult;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BulkUserServiceImplTest {
+
+    private final BulkUserWriter writer = mock(BulkUserWriter.class);
+    private final PasswordEncoder passwordEncoder = mock(PasswordEncoder.class);
+    private final List<Integer> chunkSizes = new ArrayList<>();
+    private BulkUserServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        service = new BulkUserServiceImpl(writer, passwordEncoder,
+                Validation.buildDefaultValidatorFactory().getValidator(), new ObjectMapper());
+        ReflectionTestUtils.setField(service, "batchSize", 2);
+        ReflectionTestUtils.setField(service, "maxErrors", 1);
+        ReflectionTestUtils.setField(service, "maxLineLength", 1000);
+        when(writer.grantRole(eq("PREMIUM_USER"), anyList())).thenAnswer(invocation -> {
+            List<BulkRow> rows = invocation.getArgument(1);
+            chunkSizes.add(rows.size());
+            return new ChunkResult(rows.size(), 0, List.of());
+        });
+        when(passwordEncoder.encode(any())).thenReturn("{bcrypt}hash");
+    }
+
+    @Test
+    void rowsAreWrittenInChunksAndErrorsAreCapped() throws IOException {
+        String body = "login\n" + IntStream.range(0, 5).mapToObj(i -> "user-" + i).collect(Collectors.joining("\n"))
+                + "\n\" \n\"unterminated\n";
+
+        BulkResult result = service.grantRole("premium_user", BulkFormat.CSV, stream(body));
+
+        assertThat(chunkSizes).containsExactly(2, 2, 1);
+        assertThat(result.processed()).isEqualTo(7);
+        assertThat(result.succeeded()).isEqualTo(5);
+        assertThat(result.failed()).isEqualTo(2);
+        assertThat(result.errors()).hasSize(1);
+        assertThat(result.errorsTruncated()).isTrue();
+    }
+
+    @Test
+    void invalidImportRowsNeverReachDatabase() throws IOException {
+        String body = """
+                {"login":"alice","email":"not-an-email","password":"secret1"}
+                {"login":"bob","email":"bob@example.com","password":"short"}
+                {"login":"carol","email":"carol@example.com","passwordHash":"plain-text","roles":["GUEST"]}
+                {"login":"dave","email":"dave@example.com","password":"secret1","roles":["ROOT"]}
+                """;
+
+        BulkResult result = service.importUsers(BulkFormat.NDJSON, stream(body));
+
+        assertThat(result.failed()).isEqualTo(4);
+        verify(writer, never()).importUsers(anyList());
+        verify(passwordEncoder, never()).encode(any());
+    }
+
+    @Test
+    void unknownRoleIsRejectedBeforeReadingBody() {
+        assertThatThrownBy(() -> service.grantRole("root", BulkFormat.CSV, stream("login\nalice\n")))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    private static ByteArrayInputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
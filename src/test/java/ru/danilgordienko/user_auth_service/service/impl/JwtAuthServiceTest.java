@@ -0,0 +1,76 @@
+package ru.danilgordienko.user_auth_service.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.danilgordienko.user_auth_service.config.AccessTokenDenylist;
+import ru.danilgordienko.user_auth_service.config.AccessTokenService;
+import ru.danilgordienko.user_auth_service.config.AuthMetrics;
+import ru.danilgordienko.user_auth_service.config.JWTService;
+import ru.danilgordienko.user_auth_service.config.RefreshTokenStorageMigration;
+import ru.danilgordienko.user_auth_service.dto.IntrospectionResponse;
+import ru.danilgordienko.user_auth_service.exception.TokenNotFoundException;
+import ru.danilgordienko.user_auth_service.model.VerifiedToken;
+import ru.danilgordienko.user_auth_service.repository.RefreshTokenRepository;
+import ru.danilgordienko.user_auth_service.repository.RevokedAccessTokenRepository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class JwtAuthServiceTest {
+
+    private final JWTService jwtService = mock(JWTService.class);
+    private final AccessTokenDenylist denylist = new AccessTokenDenylist(mock(RevokedAccessTokenRepository.class),
+            new SimpleMeterRegistry(), 1000, 0.01);
+    private final JwtAuthService authService = new JwtAuthService(null, null, null, null, null, jwtService,
+            new AccessTokenService(jwtService, null, List.of(denylist)), denylist, null, null, null, null, null, null, null);
+
+    @Test
+    void revokedAccessTokenIsInactive() {
+        ReflectionTestUtils.setField(denylist, "accessExpiration", 800_000);
+        when(jwtService.verify("active")).thenReturn(token("active-id"));
+        when(jwtService.verify("revoked")).thenReturn(token("revoked-id"));
+
+        denylist.revoke("revoked-id");
+
+        assertThat(authService.introspect("active").active()).isTrue();
+        assertThat(authService.introspect("revoked")).isEqualTo(IntrospectionResponse.inactive());
+    }
+
+    @Test
+    void refreshTokenIsNotAcceptedAsAccessToken() {
+        when(jwtService.verify("refresh")).thenReturn(new VerifiedToken("user", 1L, "user@example.com",
+                List.of("ROLE_GUEST"), Instant.now().plusSeconds(60), UUID.randomUUID(), 0, null, "access-id", 0, true));
+
+        assertThat(authService.introspect("refresh")).isEqualTo(IntrospectionResponse.inactive());
+    }
+
+    @Test
+    void unknownTokenIsCountedOnceAsNotFound() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        RefreshTokenRepository refreshTokenRepository = mock(RefreshTokenRepository.class);
+        JwtAuthService service = new JwtAuthService(null, null, null, refreshTokenRepository, null, jwtService,
+                null, denylist, null, null, null, null, null, new AuthMetrics(registry, false),
+                mock(RefreshTokenStorageMigration.class));
+
+        assertThatThrownBy(() -> service.revokeToken("unknown")).isInstanceOf(TokenNotFoundException.class);
+
+        // промах UPDATE не выдает себя за отозванный токен, причину учитывает только поиск
+        assertThat(registry.get("auth.stage").tags("stage", "refresh_token.revoke", "outcome", "no-match")
+                .timer().count()).isEqualTo(1);
+        assertThat(registry.get("auth.stage").tags("stage", "refresh_token.find", "outcome", "not-found")
+                .timer().count()).isEqualTo(1);
+        assertThat(registry.find("auth.stage").tag("outcome", "revoked").timer()).isNull();
+    }
+
+    private static VerifiedToken token(String tokenId) {
+        return new VerifiedToken("user", 1L, "user@example.com", List.of("ROLE_GUEST"),
+                Instant.now().plusSeconds(60), null, 0, tokenId, null, 0, false);
+    }
+}
@@ -0,0 +1,77 @@
+package ru.danilgordienko.user_auth_service.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.danilgordienko.user_auth_service.exception.TooManyLoginAttemptsException;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LoginThrottleTest {
+
+    private LoginThrottle throttle;
+
+    @BeforeEach
+    void setUp() {
+        throttle = new LoginThrottle(new InMemoryLoginAttemptStore(Duration.ofMinutes(1), 12, 1_000));
+        ReflectionTestUtils.setField(throttle, "maxFailuresPerLogin", 5);
+        ReflectionTestUtils.setField(throttle, "maxFailuresPerIp", 100);
+        ReflectionTestUtils.setField(throttle, "window", Duration.ofMinutes(1));
+    }
+
+    @Test
+    void concurrentAttemptsDoNotExceedLimit() throws InterruptedException {
+        int threads = 64;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger passed = new AtomicInteger();
+        for (int i = 0; i < threads; i++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                    throttle.acquire("alice", "10.0.0.1");
+                    passed.incrementAndGet();
+                } catch (TooManyLoginAttemptsException | InterruptedException ignored) {
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(passed.get()).isLessThanOrEqualTo(5);
+    }
+
+    @Test
+    void rejectedAttemptsDoNotExtendLockout() {
+        for (int i = 0; i < 5; i++) {
+            throttle.acquire("alice", "10.0.0.1");
+        }
+        for (int i = 0; i < 10; i++) {
+            assertThatThrownBy(() -> throttle.acquire("alice", "10.0.0.1"))
+                    .isInstanceOf(TooManyLoginAttemptsException.class);
+        }
+
+        // после успешного входа резерв возвращается и логин снова доступен
+        throttle.recordSuccess("alice", "10.0.0.1");
+        throttle.acquire("alice", "10.0.0.1");
+    }
+
+    @Test
+    void releasedAttemptIsNotCounted() {
+        for (int i = 0; i < 10; i++) {
+            throttle.acquire("alice", "10.0.0.1");
+            throttle.release("alice", "10.0.0.1");
+        }
+
+        throttle.acquire("alice", "10.0.0.1");
+    }
+}
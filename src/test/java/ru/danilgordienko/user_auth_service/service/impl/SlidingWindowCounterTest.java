@@ -0,0 +1,65 @@
+package ru.danilgordienko.user_auth_service.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SlidingWindowCounterTest {
+
+    // окно 60 секунд: 12 корзин по 5 секунд
+    private final SlidingWindowCounter counter = new SlidingWindowCounter(12, 5_000);
+
+    @Test
+    void countsEventsInsideWindow() {
+        counter.increment(0);
+        counter.increment(4_000);
+        counter.increment(30_000);
+
+        assertThat(counter.sum(30_000)).isEqualTo(3);
+        assertThat(counter.sum(59_999)).isEqualTo(3);
+    }
+
+    @Test
+    void dropsBucketsOlderThanWindow() {
+        counter.increment(0);
+        counter.increment(30_000);
+
+        assertThat(counter.sum(60_000)).isEqualTo(1);
+        assertThat(counter.sum(90_000)).isZero();
+    }
+
+    @Test
+    void reusedBucketStartsFromZero() {
+        counter.increment(0);
+        counter.increment(0);
+        counter.increment(60_000);
+
+        assertThat(counter.sum(60_000)).isEqualTo(1);
+    }
+
+    @Test
+    void decrementTakesNewestNonEmptyBucket() {
+        counter.increment(0);
+        counter.increment(10_000);
+        counter.decrement(20_000);
+
+        assertThat(counter.sum(20_000)).isEqualTo(1);
+        assertThat(counter.sum(60_000)).isZero();
+    }
+
+    @Test
+    void concurrentIncrementsAreNotLost() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8_000; i++) {
+            executor.execute(() -> counter.increment(1_000));
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(counter.sum(1_000)).isEqualTo(8_000);
+    }
+}
@@ -0,0 +1,65 @@
+package ru.danilgordienko.user_auth_service.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import ru.danilgordienko.user_auth_service.model.UserDetailsImpl;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UserDetailsCacheTest {
+
+    private final UserDetailsCache cache = new UserDetailsCache(100, Duration.ofMinutes(5), new SimpleMeterRegistry());
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void loadsOnceAndServesHitsFromCache() {
+        cache.get("user", this::load);
+        cache.get("user", this::load);
+
+        assertThat(loads).hasValue(1);
+        assertThat(cache.stats().hitCount()).isEqualTo(1);
+        assertThat(cache.stats().missCount()).isEqualTo(1);
+    }
+
+    @Test
+    void failedLoadIsNotCached() {
+        assertThatThrownBy(() -> cache.get("missing", login -> {
+            throw new UsernameNotFoundException(login + " not found");
+        })).isInstanceOf(UsernameNotFoundException.class);
+
+        cache.get("missing", this::load);
+
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void invalidateForcesReload() {
+        cache.get("user", this::load);
+        cache.invalidate("user");
+        cache.get("user", this::load);
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void entryInvalidatedDuringLoadIsNotCached() {
+        cache.get("user", login -> {
+            cache.invalidate(login);
+            return load(login);
+        });
+        cache.get("user", this::load);
+
+        assertThat(loads).hasValue(2);
+    }
+
+    private UserDetailsImpl load(String login) {
+        loads.incrementAndGet();
+        return new UserDetailsImpl(1L, login, "password", login + "@example.com", Set.of("GUEST"));
+    }
+}